@@ -16,17 +16,44 @@
 package com.example.android.sunshine.app;
 
 import android.test.suitebuilder.TestSuiteBuilder;
+import android.test.suitebuilder.annotation.LargeTest;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import java.util.Enumeration;
+
+/*
+    Every test except the @LargeTest benchmarks, which take minutes and rewrite the database.
+    Those run on their own through BenchmarkTestSuite.
+ */
 public class FullTestSuite extends TestSuite {
     public static Test suite() {
-        return new TestSuiteBuilder(FullTestSuite.class)
-                .includeAllPackagesUnderHere().build();
+        return filter(new TestSuiteBuilder(FullTestSuite.class)
+                .includeAllPackagesUnderHere().build(), false);
     }
 
     public FullTestSuite() {
         super();
     }
+
+    /**
+     * @param large Whether to keep the @LargeTest classes, rather than everything else
+     * @return a copy of the suite with only the tests of the wanted size
+     */
+    static TestSuite filter(TestSuite suite, boolean large) {
+        TestSuite filtered = new TestSuite(suite.getName());
+        for (Enumeration<?> tests = suite.tests(); tests.hasMoreElements(); ) {
+            Test test = (Test) tests.nextElement();
+            if (test instanceof TestSuite) {
+                TestSuite child = filter((TestSuite) test, large);
+                if (child.testCount() > 0) {
+                    filtered.addTest(child);
+                }
+            } else if (test.getClass().isAnnotationPresent(LargeTest.class) == large) {
+                filtered.addTest(test);
+            }
+        }
+        return filtered;
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+/*
+    Checks the table-driven weather condition lookups in Utility against the if-chains they
+    replaced, and measures both.  The timings are only logged; they are not asserted, since they
+    depend on the device the test runs on.
+ */
+public class TestWeatherConditionLookup extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWeatherConditionLookup.class.getSimpleName();
+
+    // Covers every defined condition code, plus some on either side of the table.
+    private static final int FIRST_TESTED_CODE = 0;
+    private static final int LAST_TESTED_CODE = 1000;
+
+    private static final int BENCHMARK_ITERATIONS = 200;
+
+    public void testIconLookupMatchesLegacy() {
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            assertEquals("Error: Icon mismatch for condition " + weatherId,
+                    legacyIconResource(weatherId),
+                    Utility.getIconResourceForWeatherCondition(weatherId));
+        }
+    }
+
+    public void testArtLookupMatchesLegacy() {
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            assertEquals("Error: Art mismatch for condition " + weatherId,
+                    legacyArtResource(weatherId),
+                    Utility.getArtResourceForWeatherCondition(weatherId));
+        }
+    }
+
+    public void testArtUrlLookupMatchesLegacy() {
+        String format = PreferenceManager.getDefaultSharedPreferences(mContext).getString(
+                mContext.getString(R.string.pref_art_pack_key),
+                mContext.getString(R.string.pref_art_pack_sunshine));
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            String name = legacyArtName(weatherId);
+            String expected = name == null ? null : String.format(format, name);
+            assertEquals("Error: Art url mismatch for condition " + weatherId,
+                    expected,
+                    Utility.getArtUrlForWeatherCondition(mContext, weatherId));
+        }
+    }
+
+    public void testStringLookupMatchesLegacy() {
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            int stringId = legacyStringResource(weatherId);
+            String expected = stringId == -1
+                    ? mContext.getString(R.string.condition_unknown, weatherId)
+                    : mContext.getString(stringId);
+            assertEquals("Error: String mismatch for condition " + weatherId,
+                    expected,
+                    Utility.getStringForWeatherCondition(mContext, weatherId));
+        }
+    }
+
+    public void testStringResourceLookupMatchesLegacy() {
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            assertEquals("Error: String resource mismatch for condition " + weatherId,
+                    legacyStringResource(weatherId),
+                    Utility.getStringResourceForWeatherCondition(weatherId));
+        }
+    }
+
+    public void testLookupBenchmark() {
+        // Warm up both implementations before timing them
+        int sink = runLegacy() + runTable();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            sink += runLegacy();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            sink += runTable();
+        }
+        long tableNanos = System.nanoTime() - start;
+
+        long lookups = (long) BENCHMARK_ITERATIONS * (LAST_TESTED_CODE - FIRST_TESTED_CODE + 1);
+        Log.i(LOG_TAG, "Legacy lookups: " + (legacyNanos / (double) lookups) + " ns/lookup");
+        Log.i(LOG_TAG, "Table lookups: " + (tableNanos / (double) lookups) + " ns/lookup");
+        Log.v(LOG_TAG, "Sink " + sink);
+    }
+
+    private static int runLegacy() {
+        int sum = 0;
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            sum += legacyIconResource(weatherId) + legacyArtResource(weatherId)
+                    + legacyStringResource(weatherId);
+        }
+        return sum;
+    }
+
+    private static int runTable() {
+        int sum = 0;
+        for (int weatherId = FIRST_TESTED_CODE; weatherId <= LAST_TESTED_CODE; weatherId++) {
+            sum += Utility.getIconResourceForWeatherCondition(weatherId)
+                    + Utility.getArtResourceForWeatherCondition(weatherId)
+                    + Utility.getStringResourceForWeatherCondition(weatherId);
+        }
+        return sum;
+    }
+
+    // The implementations below are the if-chains Utility used before the lookup tables.
+
+    private static int legacyIconResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    private static int legacyArtResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.art_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.art_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.art_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.art_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.art_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.art_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.art_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.art_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.art_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.art_clouds;
+        }
+        return -1;
+    }
+
+    private static String legacyArtName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+
+    private static int legacyStringResource(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.string.condition_2xx;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.string.condition_3xx;
+        }
+        switch (weatherId) {
+            case 500: return R.string.condition_500;
+            case 501: return R.string.condition_501;
+            case 502: return R.string.condition_502;
+            case 503: return R.string.condition_503;
+            case 504: return R.string.condition_504;
+            case 511: return R.string.condition_511;
+            case 520: return R.string.condition_520;
+            case 531: return R.string.condition_531;
+            case 600: return R.string.condition_600;
+            case 601: return R.string.condition_601;
+            case 602: return R.string.condition_602;
+            case 611: return R.string.condition_611;
+            case 612: return R.string.condition_612;
+            case 615: return R.string.condition_615;
+            case 616: return R.string.condition_616;
+            case 620: return R.string.condition_620;
+            case 621: return R.string.condition_621;
+            case 622: return R.string.condition_622;
+            case 701: return R.string.condition_701;
+            case 711: return R.string.condition_711;
+            case 721: return R.string.condition_721;
+            case 731: return R.string.condition_731;
+            case 741: return R.string.condition_741;
+            case 751: return R.string.condition_751;
+            case 761: return R.string.condition_761;
+            case 762: return R.string.condition_762;
+            case 771: return R.string.condition_771;
+            case 781: return R.string.condition_781;
+            case 800: return R.string.condition_800;
+            case 801: return R.string.condition_801;
+            case 802: return R.string.condition_802;
+            case 803: return R.string.condition_803;
+            case 804: return R.string.condition_804;
+            case 900: return R.string.condition_900;
+            case 901: return R.string.condition_901;
+            case 902: return R.string.condition_902;
+            case 903: return R.string.condition_903;
+            case 904: return R.string.condition_904;
+            case 905: return R.string.condition_905;
+            case 906: return R.string.condition_906;
+            case 951: return R.string.condition_951;
+            case 952: return R.string.condition_952;
+            case 953: return R.string.condition_953;
+            case 954: return R.string.condition_954;
+            case 955: return R.string.condition_955;
+            case 956: return R.string.condition_956;
+            case 957: return R.string.condition_957;
+            case 958: return R.string.condition_958;
+            case 959: return R.string.condition_959;
+            case 960: return R.string.condition_960;
+            case 961: return R.string.condition_961;
+            case 962: return R.string.condition_962;
+            default: return -1;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import android.test.AndroidTestCase;
 import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncJournalEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /*
@@ -61,6 +62,11 @@ public class TestProvider extends AndroidTestCase {
                 null,
                 null
         );
+        mContext.getContentResolver().delete(
+                SyncJournalEntry.CONTENT_URI,
+                null,
+                null
+        );
 
         Cursor cursor = mContext.getContentResolver().query(
                 WeatherEntry.CONTENT_URI,
@@ -160,6 +166,16 @@ public class TestProvider extends AndroidTestCase {
         // vnd.android.cursor.dir/com.example.android.sunshine.app/location
         assertEquals("Error: the LocationEntry CONTENT_URI should return LocationEntry.CONTENT_TYPE",
                 LocationEntry.CONTENT_TYPE, type);
+
+        // content://com.example.android.sunshine.app/sync_journal/
+        type = mContext.getContentResolver().getType(SyncJournalEntry.CONTENT_URI);
+        assertEquals("Error: the SyncJournalEntry CONTENT_URI should return SyncJournalEntry.CONTENT_TYPE",
+                SyncJournalEntry.CONTENT_TYPE, type);
+
+        // content://com.example.android.sunshine.app/sync_journal/stats
+        type = mContext.getContentResolver().getType(SyncJournalEntry.STATS_URI);
+        assertEquals("Error: the SyncJournalEntry STATS_URI should return SyncJournalEntry.STATS_CONTENT_TYPE",
+                SyncJournalEntry.STATS_CONTENT_TYPE, type);
     }
 
 
@@ -512,4 +528,72 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        Journals 100 syncs taking 1 to 100 ms in total, of which only the even ones got as far as
+        parsing, and checks the percentiles the stats come up with.
+     */
+    public void testSyncJournalStats() {
+        for (int i = 1; i <= 100; i++) {
+            mContext.getContentResolver().insert(SyncJournalEntry.CONTENT_URI,
+                    TestUtilities.createSyncJournalValues(i, i % 2 == 0 ? (long) i : null));
+        }
+
+        Cursor cursor = mContext.getContentResolver().query(SyncJournalEntry.STATS_URI,
+                null, null, null, null);
+        assertNotNull(cursor);
+        int stageIndex = cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_STAGE);
+        boolean sawTotal = false;
+        boolean sawParse = false;
+        while (cursor.moveToNext()) {
+            String stage = cursor.getString(stageIndex);
+            if (SyncJournalEntry.COLUMN_TOTAL_MILLIS.equals(stage)) {
+                sawTotal = true;
+                assertStats(cursor, 100, 50, 95, 100);
+            } else if (SyncJournalEntry.COLUMN_PARSE_MILLIS.equals(stage)) {
+                sawParse = true;
+                assertStats(cursor, 50, 50, 96, 100);
+            }
+        }
+        cursor.close();
+        assertTrue("Error: No stats for the total time", sawTotal);
+        assertTrue("Error: No stats for the parse time", sawParse);
+
+        // Only syncs started at or after the given time count
+        cursor = mContext.getContentResolver().query(
+                SyncJournalEntry.buildStatsUriSince(TestUtilities.TEST_DATE + 51),
+                null, null, null, null);
+        assertNotNull(cursor);
+        while (cursor.moveToNext()) {
+            if (SyncJournalEntry.COLUMN_TOTAL_MILLIS.equals(cursor.getString(stageIndex))) {
+                assertStats(cursor, 50, 75, 98, 100);
+            }
+        }
+        cursor.close();
+    }
+
+    private static void assertStats(Cursor cursor, int count, long p50, long p95, long max) {
+        String stage = cursor.getString(
+                cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_STAGE));
+        assertEquals("Error: Wrong count for " + stage, count,
+                cursor.getInt(cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_COUNT)));
+        assertEquals("Error: Wrong p50 for " + stage, p50,
+                cursor.getLong(cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_P50)));
+        assertEquals("Error: Wrong p95 for " + stage, p95,
+                cursor.getLong(cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_P95)));
+        assertEquals("Error: Wrong max for " + stage, max,
+                cursor.getLong(cursor.getColumnIndex(SyncJournalEntry.STATS_COLUMN_MAX)));
+    }
+
+    public void testSyncJournalIsCapped() {
+        for (int i = 0; i < WeatherProvider.MAX_SYNC_JOURNAL_ROWS + 10; i++) {
+            mContext.getContentResolver().insert(SyncJournalEntry.CONTENT_URI,
+                    TestUtilities.createSyncJournalValues(i, null));
+        }
+        Cursor cursor = mContext.getContentResolver().query(SyncJournalEntry.CONTENT_URI,
+                null, null, null, null);
+        assertEquals("Error: The sync journal should only keep the latest syncs",
+                WeatherProvider.MAX_SYNC_JOURNAL_ROWS, cursor.getCount());
+        cursor.close();
+    }
 }
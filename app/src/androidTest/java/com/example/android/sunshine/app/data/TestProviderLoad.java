@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.core.DayCalendar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Loads the provider the way the app does, to see how reads and syncs get in each other's way.
+
+    Readers run the queries the loaders run, one after the other, on every URI shape: the
+    forecast list of a location, the detail of one day, and a location lookup.  A writer does
+    what a sync of a location does: a bulkInsert of the whole forecast, then a delete of the days
+    that are over.  Each table size is run in three phases: readers alone, the writer alone, and
+    both at once, so that the cost of contention shows up as the difference.
+
+    Results are logged as CSV under the TestProviderLoad tag, one line per phase and operation:
+
+        rows,readers,phase,operation,count,per_second,p50_ms,p99_ms,max_ms
+
+    The writer's latencies under contention, against those of the writer alone, are how long
+    syncs stall behind readers.
+
+    This deletes all weather and location data, like TestProvider does.  It is left out of
+    FullTestSuite; run it through BenchmarkTestSuite.
+ */
+@LargeTest
+public class TestProviderLoad extends AndroidTestCase {
+    private static final String LOG_TAG = TestProviderLoad.class.getSimpleName();
+
+    private static final String LOCATION_PREFIX = "load-";
+    private static final int DAYS = 14;
+    private static final int READERS = 4;
+    private static final long PHASE_MILLIS = 5000;
+
+    private static final int QUERY_FORECAST = 0;
+    private static final int QUERY_DETAIL = 1;
+    private static final int QUERY_LOCATION = 2;
+    private static final String[] QUERY_NAMES = { "forecast", "detail", "location" };
+
+    private static final int WRITE_BULK_INSERT = 0;
+    private static final int WRITE_DELETE = 1;
+    private static final String[] WRITE_NAMES = { "bulkInsert", "delete" };
+
+    private ContentResolver mResolver;
+    private int mLocations;
+    private long[] mLocationIds;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mResolver = getContext().getContentResolver();
+        deleteAllRecords();
+        Log.i(LOG_TAG, "rows,readers,phase,operation,count,per_second,p50_ms,p99_ms,max_ms");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mResolver.delete(WeatherEntry.CONTENT_URI, null, null);
+        mResolver.delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    public void testSmallTable() throws Exception {
+        runLoad(10);
+    }
+
+    public void testMediumTable() throws Exception {
+        runLoad(100);
+    }
+
+    public void testLargeTable() throws Exception {
+        runLoad(1000);
+    }
+
+    /*
+        Fills the tables with a forecast for the given number of locations, then runs the three
+        phases against them.
+     */
+    private void runLoad(int locations) throws Exception {
+        deleteAllRecords();
+        mLocations = locations;
+        mLocationIds = new long[locations];
+        for (int i = 0; i < locations; i++) {
+            ContentValues location = new ContentValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, LOCATION_PREFIX + i);
+            location.put(LocationEntry.COLUMN_CITY_NAME, "City " + i);
+            location.put(LocationEntry.COLUMN_COORD_LAT, 37.4 + i * 0.01);
+            location.put(LocationEntry.COLUMN_COORD_LONG, -122.08);
+            mLocationIds[i] = ContentUris.parseId(mResolver.insert(LocationEntry.CONTENT_URI,
+                    location));
+            mResolver.bulkInsert(WeatherEntry.CONTENT_URI,
+                    createForecast(mLocationIds[i], DayCalendar.today(), 0));
+        }
+
+        int rows = locations * DAYS;
+        report(rows, READERS, "readers", runPhase(READERS, false));
+        report(rows, 0, "writer", runPhase(0, true));
+        report(rows, READERS, "mixed", runPhase(READERS, true));
+
+        Cursor cursor = mResolver.query(WeatherEntry.CONTENT_URI, null, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals("Error: The writer should keep one forecast per location",
+                    rows, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        What one phase measured, in nanoseconds per operation.
+     */
+    private static final class Phase {
+        final LatencyLog[] reads = new LatencyLog[QUERY_NAMES.length];
+        final LatencyLog[] writes = new LatencyLog[WRITE_NAMES.length];
+        long elapsedNanos;
+
+        Phase() {
+            for (int i = 0; i < reads.length; i++) {
+                reads[i] = new LatencyLog();
+            }
+            for (int i = 0; i < writes.length; i++) {
+                writes[i] = new LatencyLog();
+            }
+        }
+    }
+
+    private Phase runPhase(int readers, boolean writer) throws Exception {
+        final Phase phase = new Phase();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final long deadline = SystemClock.elapsedRealtime() + PHASE_MILLIS;
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < readers; r++) {
+            final int reader = r;
+            threads.add(new Thread(LOG_TAG + "-reader-" + r) {
+                @Override
+                public void run() {
+                    try {
+                        read(reader, deadline, phase);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+        if (writer) {
+            threads.add(new Thread(LOG_TAG + "-writer") {
+                @Override
+                public void run() {
+                    try {
+                        write(deadline, phase);
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        phase.elapsedNanos = System.nanoTime() - start;
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        return phase;
+    }
+
+    /*
+        Runs the loaders' queries round the URI shapes until the deadline.  Each reader keeps its
+        own latency logs, which are merged into the phase's at the end.
+     */
+    private void read(int reader, long deadline, Phase phase) {
+        LatencyLog[] logs = new LatencyLog[QUERY_NAMES.length];
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = new LatencyLog();
+        }
+        long now = System.currentTimeMillis();
+        int today = DayCalendar.today();
+        String sortOrder = WeatherEntry.COLUMN_DATE + " ASC";
+
+        for (int i = reader; SystemClock.elapsedRealtime() < deadline; i++) {
+            String location = LOCATION_PREFIX + (i * 31 % mLocations);
+            int query = i % QUERY_NAMES.length;
+            long start = System.nanoTime();
+            Cursor cursor;
+            switch (query) {
+                case QUERY_FORECAST:
+                    cursor = mResolver.query(
+                            WeatherEntry.buildWeatherLocationWithStartDate(location, now),
+                            null, null, null, sortOrder);
+                    break;
+                case QUERY_DETAIL:
+                    cursor = mResolver.query(WeatherEntry.buildWeatherLocationWithDate(location,
+                            DayCalendar.startOfDay(today + i % DAYS)), null, null, null, null);
+                    break;
+                default:
+                    cursor = mResolver.query(LocationEntry.CONTENT_URI, null,
+                            LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                            new String[] { location }, null);
+                    break;
+            }
+            assertNotNull(cursor);
+            try {
+                // Walk the rows, as a list binding them would
+                while (cursor.moveToNext()) {
+                    cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            logs[query].add(System.nanoTime() - start);
+        }
+
+        synchronized (phase) {
+            for (int i = 0; i < logs.length; i++) {
+                phase.reads[i].addAll(logs[i]);
+            }
+        }
+    }
+
+    /*
+        Syncs one location after the other until the deadline: a bulkInsert of a forecast that
+        starts the day before, so that there is something to delete, then a delete of the days
+        before today, like ForecastIngestor does.
+     */
+    private void write(long deadline, Phase phase) {
+        LatencyLog[] logs = phase.writes;
+        int today = DayCalendar.today();
+        long yesterdayStart = DayCalendar.startOfDay(today - 1);
+
+        for (int i = 0; SystemClock.elapsedRealtime() < deadline; i++) {
+            long locationId = mLocationIds[i % mLocations];
+            ContentValues[] forecast = createForecast(locationId, today - 1, i + 1);
+
+            long start = System.nanoTime();
+            mResolver.bulkInsert(WeatherEntry.CONTENT_URI, forecast);
+            logs[WRITE_BULK_INSERT].add(System.nanoTime() - start);
+
+            start = System.nanoTime();
+            mResolver.delete(WeatherEntry.CONTENT_URI,
+                    WeatherEntry.COLUMN_LOC_KEY + " = ? AND " + WeatherEntry.COLUMN_DATE + " <= ?",
+                    new String[] { Long.toString(locationId), Long.toString(yesterdayStart) });
+            logs[WRITE_DELETE].add(System.nanoTime() - start);
+        }
+    }
+
+    /*
+        A forecast of DAYS days from firstDay, plus the day before it.  Forecasts of different
+        versions differ on every day.
+     */
+    private static ContentValues[] createForecast(long locationId, int firstDay, int version) {
+        ContentValues[] days = new ContentValues[DAYS + (firstDay < DayCalendar.today() ? 1 : 0)];
+        for (int i = 0; i < days.length; i++) {
+            ContentValues values = new ContentValues();
+            values.put(WeatherEntry.COLUMN_LOC_KEY, locationId);
+            values.put(WeatherEntry.COLUMN_DATE, DayCalendar.startOfDay(firstDay + i));
+            values.put(WeatherEntry.COLUMN_DEGREES, (i * 37 + version) % 360);
+            values.put(WeatherEntry.COLUMN_HUMIDITY, 50 + i % 40);
+            values.put(WeatherEntry.COLUMN_PRESSURE, 1000 + i % 30);
+            values.put(WeatherEntry.COLUMN_MAX_TEMP, 20 + i % 7 + version % 5);
+            values.put(WeatherEntry.COLUMN_MIN_TEMP, 10 + i % 7 + version % 5);
+            values.put(WeatherEntry.COLUMN_SHORT_DESC, i % 2 == 0 ? "Clear" : "Rain");
+            values.put(WeatherEntry.COLUMN_WIND_SPEED, 1 + i % 10 * 0.5);
+            values.put(WeatherEntry.COLUMN_WEATHER_ID, i % 2 == 0 ? 800 : 500);
+            days[i] = values;
+        }
+        return days;
+    }
+
+    private static void report(int rows, int readers, String name, Phase phase) {
+        for (int i = 0; i < phase.reads.length; i++) {
+            phase.reads[i].log(rows, readers, name, QUERY_NAMES[i], phase.elapsedNanos);
+        }
+        for (int i = 0; i < phase.writes.length; i++) {
+            phase.writes[i].log(rows, readers, name, WRITE_NAMES[i], phase.elapsedNanos);
+        }
+    }
+
+    /*
+        A growable list of latencies, in nanoseconds.
+     */
+    private static final class LatencyLog {
+        private long[] mNanos = new long[1024];
+        private int mSize;
+
+        void add(long nanos) {
+            if (mSize == mNanos.length) {
+                mNanos = Arrays.copyOf(mNanos, mSize * 2);
+            }
+            mNanos[mSize++] = nanos;
+        }
+
+        void addAll(LatencyLog other) {
+            for (int i = 0; i < other.mSize; i++) {
+                add(other.mNanos[i]);
+            }
+        }
+
+        void log(int rows, int readers, String phase, String operation, long elapsedNanos) {
+            if (mSize == 0) {
+                return;
+            }
+            long[] sorted = Arrays.copyOf(mNanos, mSize);
+            Arrays.sort(sorted);
+            Log.i(LOG_TAG, String.format(Locale.US, "%d,%d,%s,%s,%d,%.0f,%.2f,%.2f,%.2f",
+                    rows, readers, phase, operation, mSize,
+                    mSize * 1e9 / elapsedNanos,
+                    percentile(sorted, 50) / 1e6,
+                    percentile(sorted, 99) / 1e6,
+                    sorted[mSize - 1] / 1e6));
+        }
+
+        // Nearest rank, like WeatherProvider's stats
+        private static long percentile(long[] sorted, int percent) {
+            int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1];
+        }
+    }
+}
@@ -36,6 +36,9 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION_QUERY, TEST_DATE);
     // content://com.example.android.sunshine.app/location"
     private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    // content://com.example.android.sunshine.app/sync_journal"
+    private static final Uri TEST_SYNC_JOURNAL_DIR = WeatherContract.SyncJournalEntry.CONTENT_URI;
+    private static final Uri TEST_SYNC_JOURNAL_STATS_DIR = WeatherContract.SyncJournalEntry.buildStatsUriSince(TEST_DATE);
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -53,5 +56,9 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR), WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
         assertEquals("Error: The LOCATION URI was matched incorrectly.",
                 testMatcher.match(TEST_LOCATION_DIR), WeatherProvider.LOCATION);
+        assertEquals("Error: The SYNC JOURNAL URI was matched incorrectly.",
+                testMatcher.match(TEST_SYNC_JOURNAL_DIR), WeatherProvider.SYNC_JOURNAL);
+        assertEquals("Error: The SYNC JOURNAL STATS URI was matched incorrectly.",
+                testMatcher.match(TEST_SYNC_JOURNAL_STATS_DIR), WeatherProvider.SYNC_JOURNAL_STATS);
     }
 }
@@ -111,6 +111,25 @@ public class TestUtilities extends AndroidTestCase {
         return locationRowId;
     }
 
+    /*
+        A sync journal entry for a sync started i ms after TEST_DATE that took i ms in all.
+     */
+    static ContentValues createSyncJournalValues(int i, Long parseMillis) {
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_START_TIME, TEST_DATE + i);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_TRIGGER,
+                WeatherContract.SyncJournalEntry.TRIGGER_PERIODIC);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_LOCATION_SETTING, TEST_LOCATION);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_PARSE_MILLIS, parseMillis);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_TOTAL_MILLIS, i);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_BYTES, 1024);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_INSERTED, 14);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_UPDATED, 0);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_ROWS_UNCHANGED, 0);
+        values.put(WeatherContract.SyncJournalEntry.COLUMN_OUTCOME, 0);
+        return values;
+    }
+
     /*
         Students: The functions we provide inside of TestProvider use this utility class to test
         the ContentObserver callbacks using the PollingCheck class that we grabbed from the Android
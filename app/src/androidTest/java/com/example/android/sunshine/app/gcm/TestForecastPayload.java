@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONException;
+
+public class TestForecastPayload extends AndroidTestCase {
+    private static final String DAY = "[800,21.5,12.1,55,1015.2,3.4,270,\"Clear\"]";
+
+    private static String payload(String days) {
+        return "{\"v\":1,\"loc\":\"94043\",\"city\":\"Mountain View\",\"lat\":37.39,"
+                + "\"lon\":-122.08,\"day\":16800,\"days\":[" + days + "]}";
+    }
+
+    public void testParse() throws JSONException {
+        ForecastPayload payload = ForecastPayload.parse(payload(DAY + "," + DAY));
+        assertEquals("94043", payload.locationSetting);
+        assertEquals("Mountain View", payload.cityName);
+        assertEquals(37.39, payload.latitude);
+        assertEquals(-122.08, payload.longitude);
+        assertEquals(16800, payload.firstDay);
+        assertEquals(2, payload.days.length);
+
+        ContentValues day = payload.days[0];
+        assertEquals(800, (int) day.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID));
+        assertEquals(21.5, day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP));
+        assertEquals(12.1, day.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP));
+        assertEquals(55, (int) day.getAsInteger(WeatherContract.WeatherEntry.COLUMN_HUMIDITY));
+        assertEquals("Clear", day.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        assertFalse("Error: Payload days should not carry a location",
+                day.containsKey(WeatherContract.WeatherEntry.COLUMN_LOC_KEY));
+    }
+
+    public void testRejectsInvalid() {
+        String[] invalid = {
+                "not json",
+                payload(""),
+                payload("[800,21.5,12.1,55,1015.2,3.4,270]"),
+                payload("[800,12.1,21.5,55,1015.2,3.4,270,\"Clear\"]"),
+                payload("[800,21.5,12.1,155,1015.2,3.4,270,\"Clear\"]"),
+                payload("[42,21.5,12.1,55,1015.2,3.4,270,\"Clear\"]"),
+                payload(DAY).replace("\"v\":1", "\"v\":2"),
+                payload(DAY).replace("\"loc\":\"94043\"", "\"loc\":\"\""),
+        };
+        for (String json : invalid) {
+            try {
+                ForecastPayload.parse(json);
+                fail("Error: Accepted invalid payload " + json);
+            } catch (JSONException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/*
+    A stand-in for OpenWeatherMap's /data/2.5/forecast/daily endpoint, on the loopback interface,
+    that answers every forecast request with a generated forecast of a set number of days.
+
+    It speaks just enough HTTP/1.1 for HttpURLConnection: GET requests, Content-Length bodies,
+    gzip for clients that accept it and keep-alive connections.
+ */
+class LocalForecastServer {
+    private static final String LOG_TAG = LocalForecastServer.class.getSimpleName();
+
+    static final String PATH = "/data/2.5/forecast/daily";
+
+    private static final byte[] NOT_FOUND_BODY =
+            "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}".getBytes();
+    private static final byte[] NOT_FOUND_GZIP_BODY = gzip(NOT_FOUND_BODY);
+
+    private final ServerSocket mServerSocket;
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    private final AtomicInteger mRequests = new AtomicInteger();
+    private final AtomicInteger mConnections = new AtomicInteger();
+    private volatile byte[] mBody = NOT_FOUND_BODY;
+    private volatile byte[] mGzipBody = NOT_FOUND_GZIP_BODY;
+    private volatile boolean mClosed;
+
+    LocalForecastServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * @return the base URL to hand to {@link OwmForecastSource}
+     */
+    String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + PATH + "?";
+    }
+
+    /**
+     * Sets the forecast served from now on.
+     * @param days Number of days in the forecast
+     * @param variant Forecasts with different variants differ on every day, so that syncing
+     *                one after the other changes every stored row
+     */
+    void setForecast(int days, int variant) {
+        byte[] body = forecastJson(days, variant).getBytes();
+        mGzipBody = gzip(body);
+        mBody = body;
+    }
+
+    int getRequestCount() {
+        return mRequests.get();
+    }
+
+    /**
+     * @return the number of connections accepted so far; fewer than requests when clients
+     * keep them alive
+     */
+    int getConnectionCount() {
+        return mConnections.get();
+    }
+
+    /**
+     * @return the size of the current forecast body, before compression
+     */
+    int getBodyLength() {
+        return mBody.length;
+    }
+
+    void close() throws IOException {
+        mClosed = true;
+        mServerSocket.close();
+        mExecutor.shutdownNow();
+    }
+
+    static String forecastJson(int days, int variant) {
+        StringBuilder json = new StringBuilder(days * 170 + 100);
+        json.append("{\"cod\":\"200\",\"message\":0.0032,\"city\":{\"id\":0,\"name\":\"Bench\",")
+                .append("\"coord\":{\"lat\":37.4,\"lon\":-122.08},\"country\":\"US\"},")
+                .append("\"cnt\":").append(days).append(",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double low = 10 + i % 7 + variant * 0.5;
+            json.append(String.format(Locale.US,
+                    "{\"dt\":%d,\"temp\":{\"day\":%.2f,\"min\":%.2f,\"max\":%.2f,\"night\":%.2f,"
+                            + "\"eve\":%.2f,\"morn\":%.2f},\"pressure\":%.2f,\"humidity\":%d,"
+                            + "\"weather\":[{\"id\":%d,\"main\":\"%s\",\"description\":\"%s\","
+                            + "\"icon\":\"01d\"}],\"speed\":%.2f,\"deg\":%d,\"clouds\":0}",
+                    1442000000L + i * 86400L, low + 5, low, low + 10, low + 2, low + 6, low + 1,
+                    1000.0 + i % 30 + variant, 50 + i % 40,
+                    i % 2 == 0 ? 800 : 500, i % 2 == 0 ? "Clear" : "Rain",
+                    i % 2 == 0 ? "sky is clear" : "light rain",
+                    1 + (i + variant) % 10 * 0.5, (i * 37 + variant) % 360));
+        }
+        return json.append("]}").toString();
+    }
+
+    private void accept() {
+        while (!mClosed) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnections.incrementAndGet();
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!mClosed) {
+                    Log.e(LOG_TAG, "Error accepting connection", e);
+                }
+            }
+        }
+    }
+
+    /*
+        Answers requests on a connection until the client closes it.
+     */
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                // Requests have no body, and the only header that matters is Accept-Encoding
+                boolean acceptsGzip = false;
+                String header;
+                while ((header = readLine(in)) != null && header.length() > 0) {
+                    String lower = header.toLowerCase(Locale.US);
+                    if (lower.startsWith("accept-encoding:") && lower.contains("gzip")) {
+                        acceptsGzip = true;
+                    }
+                }
+
+                mRequests.incrementAndGet();
+                String[] parts = requestLine.split(" ");
+                boolean found = parts.length == 3 && parts[0].equals("GET")
+                        && parts[1].startsWith(PATH + "?") && parts[1].contains("q=");
+                byte[] body;
+                if (found) {
+                    body = acceptsGzip ? mGzipBody : mBody;
+                } else {
+                    body = acceptsGzip ? NOT_FOUND_GZIP_BODY : NOT_FOUND_BODY;
+                }
+                String headers = (found ? "HTTP/1.1 200 OK" : "HTTP/1.1 404 Not Found") + "\r\n"
+                        + "Content-Type: application/json; charset=utf-8\r\n"
+                        + (acceptsGzip ? "Content-Encoding: gzip\r\n" : "")
+                        + "Content-Length: " + body.length + "\r\n"
+                        + "Connection: keep-alive\r\n\r\n";
+                out.write(headers.getBytes());
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error closing connection", e);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+            GZIPOutputStream out = new GZIPOutputStream(bytes);
+            out.write(body);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Not possible writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+        Reads a CRLF terminated line, or returns null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
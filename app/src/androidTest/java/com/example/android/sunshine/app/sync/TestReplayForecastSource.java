@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.core.DayCalendar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class TestReplayForecastSource extends AndroidTestCase {
+    private static final String LOCATION = "99705";
+
+    static final String RESPONSE = "{\"cod\":\"200\",\"city\":{\"name\":\"North Pole\","
+            + "\"coord\":{\"lat\":64.7488,\"lon\":-147.353}},\"list\":["
+            + "{\"pressure\":1024.52,\"humidity\":96,\"speed\":5.5,\"deg\":1.1,"
+            + "\"temp\":{\"min\":65,\"max\":75},\"weather\":[{\"id\":321,\"main\":\"Asteroids\"}]},"
+            + "{\"pressure\":1020.1,\"humidity\":80,\"speed\":2.5,\"deg\":90,"
+            + "\"temp\":{\"min\":60,\"max\":70},\"weather\":[{\"id\":800,\"main\":\"Clear\"}]}]}";
+
+    private File mDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = new File(getContext().getCacheDir(), "replay");
+        deleteDirectory();
+        assertTrue(mDirectory.mkdirs());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteDirectory();
+        super.tearDown();
+    }
+
+    private void deleteDirectory() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    static void write(File file, String contents) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    public void testReplay() throws Exception {
+        ReplayForecastSource source = new ReplayForecastSource(mDirectory, 0, 0);
+        write(source.getFile(LOCATION), RESPONSE);
+
+        SyncRun run = new SyncRun(WeatherContract.SyncJournalEntry.TRIGGER_MANUAL, LOCATION);
+        Forecast forecast = source.fetch(LOCATION, run);
+        assertEquals(SunshineSyncAdapter.LOCATION_STATUS_OK, forecast.status);
+        assertEquals("North Pole", forecast.cityName);
+        assertEquals(64.7488, forecast.latitude, 0);
+        assertEquals(DayCalendar.today(), forecast.firstDay);
+        assertEquals(2, forecast.days.length);
+        assertEquals("Asteroids", forecast.days[0].getAsString(
+                WeatherContract.WeatherEntry.COLUMN_SHORT_DESC));
+        assertEquals(RESPONSE.length(), run.bytes);
+    }
+
+    public void testDefaultResponse() throws Exception {
+        ReplayForecastSource source = new ReplayForecastSource(mDirectory, 0, 0);
+        write(new File(mDirectory, ReplayForecastSource.DEFAULT_FILE_NAME),
+                "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}");
+
+        Forecast forecast = source.fetch(LOCATION,
+                new SyncRun(WeatherContract.SyncJournalEntry.TRIGGER_MANUAL, LOCATION));
+        assertEquals("Error: Unrecorded location should get the default response",
+                SunshineSyncAdapter.LOCATION_STATUS_INVALID, forecast.status);
+    }
+
+    public void testLatencyAndBandwidth() throws Exception {
+        // 100ms of latency, and a bandwidth of ten responses per second, so the response
+        // itself takes another 100ms
+        ReplayForecastSource source =
+                new ReplayForecastSource(mDirectory, 100, RESPONSE.length() * 10);
+        write(source.getFile(LOCATION), RESPONSE);
+
+        long start = SystemClock.elapsedRealtime();
+        source.fetch(LOCATION,
+                new SyncRun(WeatherContract.SyncJournalEntry.TRIGGER_MANUAL, LOCATION));
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        assertTrue("Error: Replay took " + elapsed + "ms", elapsed >= 200);
+    }
+
+    public void testMissingRecording() throws Exception {
+        ReplayForecastSource source = new ReplayForecastSource(mDirectory, 0, 0);
+        try {
+            source.fetch(LOCATION,
+                    new SyncRun(WeatherContract.SyncJournalEntry.TRIGGER_MANUAL, LOCATION));
+            fail("Error: Fetching an unrecorded location should fail like an unreachable server");
+        } catch (IOException expected) {
+        }
+    }
+}
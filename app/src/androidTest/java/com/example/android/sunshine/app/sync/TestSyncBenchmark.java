@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.SyncResult;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Times whole syncs, from the HTTP request to the provider commit, against LocalForecastServer,
+    so that changes to the ingest path can be compared on the same device.
+
+    Each case syncs a number of locations with a forecast of a number of days: first into an
+    empty database, then repeatedly with a forecast that differs from the stored one on every
+    day.  The results are logged as CSV under the TestSyncBenchmark tag, one line per phase:
+
+        days,locations,phase,syncs,ms_per_sync,allocs_per_sync,kb_allocated_per_sync,
+        rows_per_second,notifications_per_sync,requests_per_sync,connections_per_sync
+
+    Allocations are counted on the syncing thread only, which is the one the provider runs on
+    too, since it is in the same process.  Provider notifications are counted on every weather
+    and location URI.  Fewer connections than requests means they were kept alive between the
+    requests of a sync.
+
+    This deletes all weather, location and sync journal data, like TestProvider does.  It is
+    left out of FullTestSuite; run it through BenchmarkTestSuite.
+ */
+@LargeTest
+public class TestSyncBenchmark extends AndroidTestCase {
+    private static final String LOG_TAG = TestSyncBenchmark.class.getSimpleName();
+
+    // Never the preferred location, so syncs don't update widgets, Muzei or notifications
+    private static final String LOCATION_PREFIX = "benchmark-";
+
+    // Syncs per case after the first, scaled down for big cases to keep the run short
+    private static final int MAX_SYNCS = 10;
+    private static final int MIN_SYNCS = 3;
+    private static final int ROWS_PER_CASE = 50000;
+
+    // Provider notifications are delivered asynchronously, so they are counted once none
+    // arrived for this long
+    private static final long QUIET_MILLIS = 500;
+
+    private LocalForecastServer mServer;
+    private SunshineSyncAdapter mSyncAdapter;
+    private final AtomicInteger mNotifications = new AtomicInteger();
+    private final ContentObserver mObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(boolean selfChange) {
+            mNotifications.incrementAndGet();
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new LocalForecastServer();
+        mSyncAdapter = new SunshineSyncAdapter(getContext(), false,
+                new OwmForecastSource(mServer.getBaseUrl()));
+        deleteAllRecords();
+        getContext().getContentResolver().registerContentObserver(
+                WeatherContract.BASE_CONTENT_URI, true, mObserver);
+        Log.i(LOG_TAG, "days,locations,phase,syncs,ms_per_sync,allocs_per_sync,"
+                + "kb_allocated_per_sync,rows_per_second,notifications_per_sync,"
+                + "requests_per_sync,connections_per_sync");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getContext().getContentResolver().unregisterContentObserver(mObserver);
+        mServer.close();
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        getContext().getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        getContext().getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+        // Every sync journals itself
+        getContext().getContentResolver().delete(
+                WeatherContract.SyncJournalEntry.CONTENT_URI, null, null);
+    }
+
+    public void testDays() throws Exception {
+        for (int days : new int[] { 1, 14, 100, 1000, 10000 }) {
+            benchmark(days, 1);
+        }
+    }
+
+    public void testLocations() throws Exception {
+        for (int locations : new int[] { 1, 10, 100, 500 }) {
+            benchmark(14, locations);
+        }
+    }
+
+    private void benchmark(int days, int locations) {
+        deleteAllRecords();
+        awaitQuiet();
+
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < locations; i++) {
+            if (i > 0) {
+                joined.append(SunshineSyncAdapter.LOCATION_SEPARATOR);
+            }
+            joined.append(LOCATION_PREFIX).append(i);
+        }
+        Bundle extras = new Bundle();
+        extras.putString(SunshineSyncAdapter.EXTRA_LOCATIONS, joined.toString());
+
+        int rows = days * locations;
+        int syncs = Math.max(MIN_SYNCS, Math.min(MAX_SYNCS, ROWS_PER_CASE / rows));
+
+        mServer.setForecast(days, 0);
+        run(days, locations, "insert", extras, 1, false);
+        assertStored(days, locations);
+
+        run(days, locations, "update", extras, syncs, true);
+        assertStored(days, locations);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void run(int days, int locations, String phase, Bundle extras, int syncs,
+                     boolean changeEachSync) {
+        mNotifications.set(0);
+        int requests = mServer.getRequestCount();
+        int connections = mServer.getConnectionCount();
+
+        long elapsed = 0;
+        long allocs = 0;
+        long allocated = 0;
+        for (int sync = 0; sync < syncs; sync++) {
+            if (changeEachSync) {
+                // Building the forecast isn't part of the sync, so it is left out of the counts
+                mServer.setForecast(days, sync % 2 + 1);
+            }
+
+            Debug.resetThreadAllocCount();
+            Debug.resetThreadAllocSize();
+            Debug.startAllocCounting();
+            long start = SystemClock.elapsedRealtime();
+            mSyncAdapter.onPerformSync(null, extras, WeatherContract.CONTENT_AUTHORITY, null,
+                    new SyncResult());
+            elapsed += SystemClock.elapsedRealtime() - start;
+            Debug.stopAllocCounting();
+            allocs += Debug.getThreadAllocCount();
+            allocated += Debug.getThreadAllocSize();
+        }
+        awaitQuiet();
+
+        Log.i(LOG_TAG, String.format(Locale.US, "%d,%d,%s,%d,%.1f,%d,%d,%.0f,%.1f,%.1f,%.1f",
+                days, locations, phase, syncs,
+                (double) elapsed / syncs,
+                allocs / syncs,
+                allocated / syncs / 1024,
+                elapsed > 0 ? days * locations * syncs * 1000.0 / elapsed : 0,
+                (double) mNotifications.get() / syncs,
+                (double) (mServer.getRequestCount() - requests) / syncs,
+                (double) (mServer.getConnectionCount() - connections) / syncs));
+    }
+
+    private void assertStored(int days, int locations) {
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherEntry.CONTENT_URI, new String[] { WeatherEntry._ID }, null, null, null);
+        assertNotNull(cursor);
+        try {
+            assertEquals("Error: Sync didn't store every day of every location",
+                    days * locations, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void awaitQuiet() {
+        int before;
+        do {
+            before = mNotifications.get();
+            SystemClock.sleep(QUIET_MILLIS);
+        } while (mNotifications.get() != before);
+    }
+}
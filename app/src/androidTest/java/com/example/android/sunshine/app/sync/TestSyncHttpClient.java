@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.IOException;
+import java.net.URL;
+
+public class TestSyncHttpClient extends AndroidTestCase {
+    private static final String LOCATION = "94043";
+
+    private LocalForecastServer mServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new LocalForecastServer();
+        mServer.setForecast(14, 0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.close();
+        super.tearDown();
+    }
+
+    private static SyncRun newRun() {
+        return new SyncRun(WeatherContract.SyncJournalEntry.TRIGGER_MANUAL, LOCATION);
+    }
+
+    public void testCompressedResponse() throws Exception {
+        SyncHttpClient client = new SyncHttpClient();
+        SyncRun run = newRun();
+        String body = client.get(new URL(mServer.getBaseUrl() + "q=" + LOCATION), run);
+
+        assertEquals(LocalForecastServer.forecastJson(14, 0), body);
+        assertTrue("Error: Counted " + run.bytes + " bytes for a " + mServer.getBodyLength()
+                        + " byte body, which should have been compressed",
+                run.bytes > 0 && run.bytes < mServer.getBodyLength());
+    }
+
+    public void testConnectionReused() throws Exception {
+        SyncHttpClient client = new SyncHttpClient();
+        URL url = new URL(mServer.getBaseUrl() + "q=" + LOCATION);
+        for (int i = 0; i < 5; i++) {
+            client.get(url, newRun());
+        }
+
+        assertEquals(5, mServer.getRequestCount());
+        assertEquals("Error: Requests to the same host should share a kept-alive connection",
+                1, mServer.getConnectionCount());
+    }
+
+    public void testErrorStatus() throws Exception {
+        SyncHttpClient client = new SyncHttpClient();
+        try {
+            // Not a forecast path, so the server answers 404
+            client.get(new URL("http://127.0.0.1:" + new URL(mServer.getBaseUrl()).getPort()
+                    + "/nowhere"), newRun());
+            fail("Error: An error status should fail the request");
+        } catch (IOException expected) {
+        }
+
+        // The error body was drained, so the connection is still good for the next request
+        client.get(new URL(mServer.getBaseUrl() + "q=" + LOCATION), newRun());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+public class TestSyncScheduler extends AndroidTestCase {
+    private static final int HOUR = 60 * 60;
+    private static final int[] NO_OPENS = new int[24];
+
+    private static int[] opensAt(int hour, int count) {
+        int[] opens = new int[24];
+        opens[hour] = count;
+        return opens;
+    }
+
+    public void testChangeRate() {
+        int changing = SyncScheduler.computeInterval(12, 0, 1f, false, NO_OPENS);
+        int stable = SyncScheduler.computeInterval(12, 0, 0f, false, NO_OPENS);
+        assertTrue("Error: A changing forecast should be synced more often",
+                changing < SunshineSyncAdapter.SYNC_INTERVAL);
+        assertTrue("Error: A stable forecast should be synced less often",
+                stable > SunshineSyncAdapter.SYNC_INTERVAL);
+    }
+
+    public void testCheapSyncsAreMoreFrequent() {
+        assertTrue("Error: Syncs should be more frequent while charging on an unmetered network",
+                SyncScheduler.computeInterval(12, 0, 0.5f, true, NO_OPENS)
+                        < SyncScheduler.computeInterval(12, 0, 0.5f, false, NO_OPENS));
+    }
+
+    public void testNight() {
+        assertTrue("Error: Syncs should be further apart overnight",
+                SyncScheduler.computeInterval(2, 0, 0.5f, false, NO_OPENS)
+                        > SyncScheduler.computeInterval(12, 0, 0.5f, false, NO_OPENS));
+    }
+
+    /*
+        With the app usually opened at 7, a sync at 5:30 should be scheduled for just before 7
+        rather than a full period later.
+     */
+    public void testSyncsBeforeUsualHour() {
+        int interval = SyncScheduler.computeInterval(5, 30, 0.5f, false, opensAt(7, 20));
+        assertEquals("Error: Sync should land at the start of the usual hour",
+                HOUR + HOUR / 2, interval);
+    }
+
+    public void testBounds() {
+        for (int hour = 0; hour < 24; hour++) {
+            for (float rate = 0; rate <= 1; rate += 0.25f) {
+                int interval = SyncScheduler.computeInterval(hour, 59, rate, rate > 0.5f,
+                        opensAt((hour + 1) % 24, 20));
+                assertTrue("Error: Interval " + interval + " too short",
+                        interval >= SyncScheduler.MIN_INTERVAL);
+                assertTrue("Error: Interval " + interval + " too long",
+                        interval <= SyncScheduler.MAX_INTERVAL);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+public class TestSyncTrace extends AndroidTestCase {
+
+    @Override
+    protected void tearDown() throws Exception {
+        SyncTrace.setEnabled(false);
+        SyncTrace.reset();
+        super.tearDown();
+    }
+
+    public void testBuckets() {
+        assertEquals(0, SyncTrace.bucketOf(999999));
+        assertEquals(1, SyncTrace.bucketOf(1000000));
+        assertEquals(2, SyncTrace.bucketOf(3000000));
+        assertEquals("Error: Slow stages should land in the last bucket",
+                15, SyncTrace.bucketOf(Long.MAX_VALUE));
+    }
+
+    public void testPercentile() {
+        long[] buckets = new long[16];
+        buckets[2] = 90;
+        buckets[5] = 10;
+        assertEquals(4, SyncTrace.percentile(buckets, 100, 50));
+        assertEquals(32, SyncTrace.percentile(buckets, 100, 95));
+        assertEquals(0, SyncTrace.percentile(new long[16], 0, 50));
+    }
+
+    /*
+        Stages recorded while disabled shouldn't show up in the dump, and ones recorded while
+        enabled should.
+     */
+    public void testRecording() {
+        SyncTrace.reset();
+        SyncTrace.end(SyncTrace.STAGE_DELETE, SyncTrace.begin(SyncTrace.STAGE_DELETE));
+        assertTrue("Error: Stage recorded while disabled",
+                SyncTrace.dumpCsv().contains("\ndelete,0,"));
+
+        SyncTrace.setEnabled(true);
+        SyncTrace.end(SyncTrace.STAGE_DELETE, SyncTrace.begin(SyncTrace.STAGE_DELETE));
+        assertTrue("Error: Stage not recorded while enabled",
+                SyncTrace.dumpCsv().contains("\ndelete,1,"));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.util.Random;
+
+public class TestWatchFaceRetryScheduler extends AndroidTestCase {
+
+    /*
+        The delay for each attempt should fall between half and all of the backoff, which
+        doubles with every failure until it reaches the cap.
+     */
+    public void testDelayBackoff() {
+        Random random = new Random(42);
+        long backoff = WatchFaceRetryScheduler.INITIAL_DELAY_MILLIS;
+        for (int failures = 0; failures < 100; failures++) {
+            long delay = WatchFaceRetryScheduler.getDelay(failures, random);
+            assertTrue("Error: Delay " + delay + " too short after " + failures + " failures",
+                    delay >= backoff / 2);
+            assertTrue("Error: Delay " + delay + " too long after " + failures + " failures",
+                    delay <= backoff);
+            backoff = Math.min(backoff * 2, WatchFaceRetryScheduler.MAX_DELAY_MILLIS);
+        }
+    }
+
+    public void testDelayJitter() {
+        Random random = new Random(42);
+        long first = WatchFaceRetryScheduler.getDelay(3, random);
+        boolean varied = false;
+        for (int i = 0; i < 10 && !varied; i++) {
+            varied = WatchFaceRetryScheduler.getDelay(3, random) != first;
+        }
+        assertTrue("Error: Delays for the same attempt are not jittered", varied);
+    }
+}
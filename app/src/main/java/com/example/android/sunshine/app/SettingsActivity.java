@@ -27,6 +27,7 @@ import android.preference.PreferenceManager;
 
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.SyncTrace;
 
 /**
  * A {@link PreferenceActivity} that presents a set of application settings.
@@ -50,6 +51,30 @@ public class SettingsActivity extends PreferenceActivity
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_location_key)));
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_units_key)));
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_art_pack_key)));
+
+        if (BuildConfig.DEBUG) {
+            addPreferencesFromResource(R.xml.pref_debug);
+            findPreference(getString(R.string.pref_sync_trace_share_key))
+                    .setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+                        @Override
+                        public boolean onPreferenceClick(Preference preference) {
+                            shareSyncTrace();
+                            return true;
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Sends the sync stage histograms somewhere as CSV, e.g. to a mail or a spreadsheet.
+     */
+    private void shareSyncTrace() {
+        Intent shareIntent = new Intent(Intent.ACTION_SEND)
+                .setType("text/csv")
+                .putExtra(Intent.EXTRA_SUBJECT, getString(R.string.pref_sync_trace_label))
+                .putExtra(Intent.EXTRA_TEXT, SyncTrace.dumpCsv());
+        startActivity(Intent.createChooser(shareIntent,
+                getString(R.string.pref_sync_trace_share_label)));
     }
 
     // Registers a shared preference change listener that gets notified when preferences change
@@ -146,6 +171,13 @@ public class SettingsActivity extends PreferenceActivity
         } else if ( key.equals(getString(R.string.pref_art_pack_key)) ) {
             // art pack have changed. update lists of weather entries accordingly
             getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        } else if ( key.equals(getString(R.string.pref_sync_trace_key)) ) {
+            // start or stop recording sync timings; a fresh recording starts from nothing
+            boolean enabled = sharedPreferences.getBoolean(key, false);
+            if (enabled && !SyncTrace.isEnabled()) {
+                SyncTrace.reset();
+            }
+            SyncTrace.setEnabled(enabled);
         }
     }
 
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * An immutable copy of the user's settings, for code that reads them on hot paths (adapters,
+ * widgets, the sync adapter and the watch face sync).
+ *
+ * The current snapshot is published through a volatile reference and replaced whenever a
+ * preference changes, so reading a setting is a field read rather than a SharedPreferences
+ * lookup plus the resource lookups for its key and default value.
+ */
+public final class SettingsSnapshot {
+    private static volatile SettingsSnapshot sCurrent;
+    private static Listener sListener;
+
+    public final String location;
+    public final boolean metric;
+    public final String artPack;
+    public final boolean usingLocalGraphics;
+    public final boolean notificationsEnabled;
+
+    private SettingsSnapshot(SharedPreferences prefs, Keys keys) {
+        location = prefs.getString(keys.location, keys.locationDefault);
+        metric = prefs.getString(keys.units, keys.unitsMetric).equals(keys.unitsMetric);
+        artPack = prefs.getString(keys.artPack, keys.artPackSunshine);
+        usingLocalGraphics = artPack.equals(keys.artPackSunshine);
+        notificationsEnabled = prefs.getBoolean(keys.notifications, keys.notificationsDefault);
+    }
+
+    /**
+     * @param context Context used to get the SharedPreferences the first time this is called
+     * @return the current settings
+     */
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sCurrent;
+        if (snapshot == null) {
+            snapshot = init(context);
+        }
+        return snapshot;
+    }
+
+    private static synchronized SettingsSnapshot init(Context context) {
+        if (sCurrent == null) {
+            Context appContext = context.getApplicationContext();
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+            // SharedPreferences only keeps a weak reference to its listeners, so hold on to it.
+            sListener = new Listener(new Keys(appContext));
+            prefs.registerOnSharedPreferenceChangeListener(sListener);
+            sCurrent = new SettingsSnapshot(prefs, sListener.keys);
+        }
+        return sCurrent;
+    }
+
+    /**
+     * Preference keys and defaults, resolved from resources once.
+     */
+    private static final class Keys {
+        final String location;
+        final String locationDefault;
+        final String units;
+        final String unitsMetric;
+        final String artPack;
+        final String artPackSunshine;
+        final String notifications;
+        final boolean notificationsDefault;
+        final String locationStatus;
+
+        Keys(Context context) {
+            location = context.getString(R.string.pref_location_key);
+            locationDefault = context.getString(R.string.pref_location_default);
+            units = context.getString(R.string.pref_units_key);
+            unitsMetric = context.getString(R.string.pref_units_metric);
+            artPack = context.getString(R.string.pref_art_pack_key);
+            artPackSunshine = context.getString(R.string.pref_art_pack_sunshine);
+            notifications = context.getString(R.string.pref_enable_notifications_key);
+            notificationsDefault = Boolean.parseBoolean(
+                    context.getString(R.string.pref_enable_notifications_default));
+            locationStatus = context.getString(R.string.pref_location_status_key);
+        }
+    }
+
+    private static final class Listener implements SharedPreferences.OnSharedPreferenceChangeListener {
+        final Keys keys;
+
+        Listener(Keys keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            // The location status isn't part of the snapshot, and changes on every sync.  It is
+            // read straight from SharedPreferences, since listeners that show it may be called
+            // before this one.
+            if (keys.locationStatus.equals(key)) {
+                return;
+            }
+            sCurrent = new SettingsSnapshot(sharedPreferences, keys);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.core.DayCalendar;
+import com.example.android.sunshine.core.Temperatures;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats temperatures and day labels for display.
+ *
+ * The unit preference and the locale are snapshotted rather than looked up on every call, and
+ * formatted strings are cached: temperatures by rounded degree, day labels by day.  Binding a
+ * list of forecasts therefore only formats each distinct value once.  Cached temperatures are
+ * dropped when the units setting or the default locale changes, and day labels are dropped when
+ * the current day changes, since "Today" and "Tomorrow" move with it.
+ */
+public final class WeatherFormatter {
+    private static WeatherFormatter sInstance;
+
+    // Kinds of day labels, combined with the day to key the label cache
+    private static final int LABEL_FRIENDLY = 0;
+    private static final int LABEL_FRIENDLY_LONG_TODAY = 1;
+    private static final int LABEL_FULL_FRIENDLY = 2;
+    private static final int LABEL_DAY_NAME = 3;
+    private static final int LABEL_MONTH_DAY = 4;
+    private static final int LABEL_KINDS = 5;
+
+    // Labels are only kept for the days around today, so this is never reached in practice.  It
+    // bounds the cache if callers walk through a long range of dates.
+    private static final int MAX_CACHED_LABELS = 256;
+
+    // Key of "-0°" in the temperature cache; no temperature rounds to it
+    private static final int NEGATIVE_ZERO_KEY = Integer.MIN_VALUE;
+
+    private final Context mContext;
+
+    private final StringBuilder mBuilder = new StringBuilder();
+    private Formatter mFormatter;
+
+    private boolean mMetric;
+    private Locale mLocale;
+    private TimeZone mTimeZone;
+    private String mTemperatureFormat;
+    private SimpleDateFormat mShortDateFormat;
+    private SimpleDateFormat mDayNameFormat;
+    private SimpleDateFormat mMonthDayFormat;
+    private final Date mDate = new Date();
+
+    private final SparseArray<String> mTemperatures = new SparseArray<>();
+    private final SparseArray<String> mDayLabels = new SparseArray<>();
+    private int mLabelsToday;
+
+    /**
+     * @param context Context used to look up resources and preferences
+     * @return the formatter shared by the whole application
+     */
+    public static synchronized WeatherFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WeatherFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WeatherFormatter(Context context) {
+        mContext = context;
+        mMetric = SettingsSnapshot.get(context).metric;
+        refreshLocale(Locale.getDefault());
+    }
+
+    private void refreshLocale(Locale locale) {
+        mLocale = locale;
+        mTemperatureFormat = mContext.getString(R.string.format_temperature);
+        mShortDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+        mDayNameFormat = new SimpleDateFormat("EEEE", locale);
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+        mFormatter = new Formatter(mBuilder, locale);
+        mTimeZone = null;
+        mTemperatures.clear();
+        mDayLabels.clear();
+    }
+
+    private void checkLocale() {
+        Locale locale = Locale.getDefault();
+        if (!locale.equals(mLocale)) {
+            refreshLocale(locale);
+        }
+    }
+
+    private void checkTimeZone() {
+        TimeZone timeZone = DayCalendar.getTimeZone();
+        if (timeZone != mTimeZone) {
+            mTimeZone = timeZone;
+            mShortDateFormat.setTimeZone(timeZone);
+            mDayNameFormat.setTimeZone(timeZone);
+            mMonthDayFormat.setTimeZone(timeZone);
+            mDayLabels.clear();
+        }
+    }
+
+    /**
+     * Formats a temperature stored in Celsius in the user's preferred units, e.g "21°".
+     */
+    public synchronized String formatTemperature(double temperature) {
+        checkLocale();
+        boolean metric = SettingsSnapshot.get(mContext).metric;
+        if (metric != mMetric) {
+            mMetric = metric;
+            mTemperatures.clear();
+        }
+
+        // Data stored in Celsius by default.  If user prefers to see in Fahrenheit, convert
+        // the values here.
+        temperature = Temperatures.toDisplayUnits(temperature, mMetric);
+
+        // For presentation, assume the user doesn't care about tenths of a degree.  Round the
+        // same way the format string would, so that the cached string for a degree is exactly
+        // what formatting the raw value would have produced, as the watch still does.  That
+        // includes "-0°" for temperatures just below zero, which gets a key of its own.
+        int degrees = Temperatures.roundDegrees(temperature);
+        boolean negativeZero = degrees == 0 && Temperatures.isNegative(temperature);
+        int key = negativeZero ? NEGATIVE_ZERO_KEY : degrees;
+        String formatted = mTemperatures.get(key);
+        if (formatted == null) {
+            mBuilder.setLength(0);
+            mFormatter.format(mTemperatureFormat, negativeZero ? -0.0 : (double) degrees);
+            formatted = mBuilder.toString();
+            mTemperatures.put(key, formatted);
+        }
+        return formatted;
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public synchronized String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        int day = getDayLabelKey(dateInMillis);
+        int currentDay = mLabelsToday;
+        int kind = displayLongToday && day == currentDay
+                ? LABEL_FRIENDLY_LONG_TODAY : LABEL_FRIENDLY;
+
+        String label = mDayLabels.get(day * LABEL_KINDS + kind);
+        if (label == null) {
+            if (kind == LABEL_FRIENDLY_LONG_TODAY) {
+                // If the date we're building the String for is today's date, the format
+                // is "Today, June 24"
+                label = mContext.getString(R.string.format_full_friendly_date,
+                        mContext.getString(R.string.today),
+                        getMonthDay(day, dateInMillis));
+            } else if (day < currentDay + 7) {
+                // If the input date is less than a week in the future, just return the day name.
+                label = getDayName(day, dateInMillis);
+            } else {
+                // Otherwise, use the form "Mon Jun 3"
+                mDate.setTime(dateInMillis);
+                label = mShortDateFormat.format(mDate);
+            }
+            putLabel(day, kind, label);
+        }
+        return label;
+    }
+
+    /**
+     * @see Utility#getFullFriendlyDayString(Context, long)
+     */
+    public synchronized String getFullFriendlyDayString(long dateInMillis) {
+        int day = getDayLabelKey(dateInMillis);
+        String label = mDayLabels.get(day * LABEL_KINDS + LABEL_FULL_FRIENDLY);
+        if (label == null) {
+            label = mContext.getString(R.string.format_full_friendly_date,
+                    getDayName(day, dateInMillis),
+                    getMonthDay(day, dateInMillis));
+            putLabel(day, LABEL_FULL_FRIENDLY, label);
+        }
+        return label;
+    }
+
+    /**
+     * @see Utility#getDayName(Context, long)
+     */
+    public synchronized String getDayName(long dateInMillis) {
+        return getDayName(getDayLabelKey(dateInMillis), dateInMillis);
+    }
+
+    /**
+     * @see Utility#getFormattedMonthDay(Context, long)
+     */
+    public synchronized String getFormattedMonthDay(long dateInMillis) {
+        return getMonthDay(getDayLabelKey(dateInMillis), dateInMillis);
+    }
+
+    private String getDayName(int day, long dateInMillis) {
+        String label = mDayLabels.get(day * LABEL_KINDS + LABEL_DAY_NAME);
+        if (label == null) {
+            // If the date is today, return the localized version of "Today" instead of the
+            // actual day name.
+            if (day == mLabelsToday) {
+                label = mContext.getString(R.string.today);
+            } else if (day == mLabelsToday + 1) {
+                label = mContext.getString(R.string.tomorrow);
+            } else {
+                // Otherwise, the format is just the day of the week (e.g "Wednesday".
+                mDate.setTime(dateInMillis);
+                label = mDayNameFormat.format(mDate);
+            }
+            putLabel(day, LABEL_DAY_NAME, label);
+        }
+        return label;
+    }
+
+    private String getMonthDay(int day, long dateInMillis) {
+        String label = mDayLabels.get(day * LABEL_KINDS + LABEL_MONTH_DAY);
+        if (label == null) {
+            mDate.setTime(dateInMillis);
+            label = mMonthDayFormat.format(mDate);
+            putLabel(day, LABEL_MONTH_DAY, label);
+        }
+        return label;
+    }
+
+    private void putLabel(int day, int kind, String label) {
+        if (mDayLabels.size() >= MAX_CACHED_LABELS) {
+            mDayLabels.clear();
+        }
+        mDayLabels.put(day * LABEL_KINDS + kind, label);
+    }
+
+    /**
+     * Returns the epoch day of the given date, first making sure that the label cache still
+     * belongs to the current locale, time zone and day.
+     */
+    private int getDayLabelKey(long dateInMillis) {
+        checkLocale();
+        checkTimeZone();
+        int today = DayCalendar.today();
+        if (today != mLabelsToday) {
+            mDayLabels.clear();
+            mLabelsToday = today;
+        }
+        return DayCalendar.toEpochDay(dateInMillis);
+    }
+}
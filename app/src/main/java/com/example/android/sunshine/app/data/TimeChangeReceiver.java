@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import com.example.android.sunshine.core.DayCalendar;
+
+/**
+ * Drops the day cached by {@link DayCalendar} when the time zone or the clock changes.
+ *
+ * It is registered at runtime, for as long as the process lives, rather than in the manifest:
+ * a process that isn't running has no cached day to drop, so there is no point in starting one
+ * for every clock adjustment.  Date changes need no broadcast, since the cached day rolls over
+ * by itself at its end.
+ */
+public class TimeChangeReceiver extends BroadcastReceiver {
+    private static boolean sRegistered;
+
+    /**
+     * Registers the receiver, unless it already is in this process.
+     */
+    public static synchronized void register(Context context) {
+        if (sRegistered) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        context.getApplicationContext().registerReceiver(new TimeChangeReceiver(), filter);
+        sRegistered = true;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        DayCalendar.invalidate();
+    }
+}
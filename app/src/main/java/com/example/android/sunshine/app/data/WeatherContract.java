@@ -19,7 +19,8 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
+
+import com.example.android.sunshine.core.DayCalendar;
 
 /**
  * Defines table and column names for the weather database.
@@ -43,15 +44,13 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_SYNC_JOURNAL = "sync_journal";
+    public static final String PATH_STATS = "stats";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
-    // the database to the start of the the Julian day at UTC.
+    // the database to the start of the local day.
     public static long normalizeDate(long startDate) {
-        // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        return DayCalendar.normalize(startDate);
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -165,4 +164,90 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the sync journal table */
+    public static final class SyncJournalEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI =
+                BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC_JOURNAL).build();
+
+        // Aggregates over the journal: one row per stage of a sync, see the STATS_ columns
+        public static final Uri STATS_URI =
+                CONTENT_URI.buildUpon().appendPath(PATH_STATS).build();
+
+        public static final String CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_JOURNAL;
+        public static final String STATS_CONTENT_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC_JOURNAL
+                        + "/" + PATH_STATS;
+
+        public static final String TABLE_NAME = "sync_journal";
+
+        // When the sync started, stored as long in milliseconds since the epoch
+        public static final String COLUMN_START_TIME = "start_time";
+        // What asked for the sync; one of the TRIGGER_ values
+        public static final String COLUMN_TRIGGER = "trigger";
+        // The location setting that was synced
+        public static final String COLUMN_LOCATION_SETTING = "location_setting";
+
+        // How long each stage took, in milliseconds.  Null for stages the sync didn't reach.
+        // DNS lookup of the forecast server
+        public static final String COLUMN_DNS_MILLIS = "dns_ms";
+        // Opening the connection
+        public static final String COLUMN_CONNECT_MILLIS = "connect_ms";
+        // From sending the request to receiving the response headers
+        public static final String COLUMN_TTFB_MILLIS = "ttfb_ms";
+        // Reading the response body
+        public static final String COLUMN_DOWNLOAD_MILLIS = "download_ms";
+        // Turning the response into rows
+        public static final String COLUMN_PARSE_MILLIS = "parse_ms";
+        // Writing the rows to the database
+        public static final String COLUMN_COMMIT_MILLIS = "commit_ms";
+        // The whole sync
+        public static final String COLUMN_TOTAL_MILLIS = "total_ms";
+
+        // Bytes of response body read
+        public static final String COLUMN_BYTES = "bytes";
+
+        // How the sync changed the stored forecast, counted in days
+        public static final String COLUMN_ROWS_INSERTED = "rows_inserted";
+        public static final String COLUMN_ROWS_UPDATED = "rows_updated";
+        public static final String COLUMN_ROWS_UNCHANGED = "rows_unchanged";
+
+        // How the sync ended, as a SunshineSyncAdapter.LocationStatus value
+        public static final String COLUMN_OUTCOME = "outcome";
+
+        public static final String TRIGGER_PERIODIC = "periodic";
+        public static final String TRIGGER_MANUAL = "manual";
+        public static final String TRIGGER_TICKLE = "tickle";
+
+        // Columns of the stats: the stage's timing column, the number of syncs that reached it,
+        // and percentiles of its time, in milliseconds
+        public static final String STATS_COLUMN_STAGE = "stage";
+        public static final String STATS_COLUMN_COUNT = "count";
+        public static final String STATS_COLUMN_P50 = "p50";
+        public static final String STATS_COLUMN_P95 = "p95";
+        public static final String STATS_COLUMN_MAX = "max";
+
+        public static Uri buildSyncJournalUri(long id) {
+            return ContentUris.withAppendedId(CONTENT_URI, id);
+        }
+
+        /**
+         * @param startTime Only syncs started at or after this time, in milliseconds since the
+         *                  epoch, are aggregated
+         */
+        public static Uri buildStatsUriSince(long startTime) {
+            return STATS_URI.buildUpon()
+                    .appendQueryParameter(COLUMN_START_TIME, Long.toString(startTime)).build();
+        }
+
+        public static long getStartTimeFromUri(Uri uri) {
+            String startTime = uri.getQueryParameter(COLUMN_START_TIME);
+            if (null != startTime && startTime.length() > 0)
+                return Long.parseLong(startTime);
+            else
+                return 0;
+        }
+    }
 }
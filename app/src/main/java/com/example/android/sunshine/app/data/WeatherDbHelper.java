@@ -20,6 +20,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncJournalEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
@@ -28,7 +29,7 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
@@ -79,8 +80,31 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
                 " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
                 WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
 
+        // One row per location per sync, for finding out where sync time goes.  Stage timings
+        // are null for the stages a sync didn't get to.
+        final String SQL_CREATE_SYNC_JOURNAL_TABLE = "CREATE TABLE " + SyncJournalEntry.TABLE_NAME + " (" +
+                SyncJournalEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                SyncJournalEntry.COLUMN_START_TIME + " INTEGER NOT NULL, " +
+                SyncJournalEntry.COLUMN_TRIGGER + " TEXT NOT NULL, " +
+                SyncJournalEntry.COLUMN_LOCATION_SETTING + " TEXT NOT NULL, " +
+
+                SyncJournalEntry.COLUMN_DNS_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_CONNECT_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_TTFB_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_DOWNLOAD_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_PARSE_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_COMMIT_MILLIS + " INTEGER, " +
+                SyncJournalEntry.COLUMN_TOTAL_MILLIS + " INTEGER NOT NULL, " +
+
+                SyncJournalEntry.COLUMN_BYTES + " INTEGER NOT NULL, " +
+                SyncJournalEntry.COLUMN_ROWS_INSERTED + " INTEGER NOT NULL, " +
+                SyncJournalEntry.COLUMN_ROWS_UPDATED + " INTEGER NOT NULL, " +
+                SyncJournalEntry.COLUMN_ROWS_UNCHANGED + " INTEGER NOT NULL, " +
+                SyncJournalEntry.COLUMN_OUTCOME + " INTEGER NOT NULL);";
+
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_SYNC_JOURNAL_TABLE);
     }
 
     @Override
@@ -93,6 +117,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         // should be your top priority before modifying this method.
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncJournalEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
@@ -20,6 +20,7 @@ import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
@@ -34,6 +35,31 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int SYNC_JOURNAL = 400;
+    static final int SYNC_JOURNAL_STATS = 401;
+
+    // The journal only needs to cover recent syncs; older rows are dropped as new ones come in
+    static final int MAX_SYNC_JOURNAL_ROWS = 1000;
+
+    // The stages aggregated by the stats, in the order their rows come out
+    private static final String[] SYNC_STAGE_COLUMNS = {
+            WeatherContract.SyncJournalEntry.COLUMN_DNS_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_CONNECT_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_TTFB_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_DOWNLOAD_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_PARSE_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_COMMIT_MILLIS,
+            WeatherContract.SyncJournalEntry.COLUMN_TOTAL_MILLIS
+    };
+
+    private static final String[] SYNC_STATS_COLUMNS = {
+            WeatherContract.SyncJournalEntry._ID,
+            WeatherContract.SyncJournalEntry.STATS_COLUMN_STAGE,
+            WeatherContract.SyncJournalEntry.STATS_COLUMN_COUNT,
+            WeatherContract.SyncJournalEntry.STATS_COLUMN_P50,
+            WeatherContract.SyncJournalEntry.STATS_COLUMN_P95,
+            WeatherContract.SyncJournalEntry.STATS_COLUMN_MAX
+    };
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
@@ -108,6 +134,53 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    /**
+     * Aggregates the sync journal: for each stage, how many syncs reached it and the 50th and
+     * 95th percentile and the maximum of its time.  SQLite has no percentile function, so the
+     * times are read back sorted and picked out here; with the journal capped at
+     * {@link #MAX_SYNC_JOURNAL_ROWS}, that is at most a few thousand numbers.
+     */
+    private Cursor getSyncJournalStats(Uri uri) {
+        String startTime = Long.toString(WeatherContract.SyncJournalEntry.getStartTimeFromUri(uri));
+        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        MatrixCursor stats = new MatrixCursor(SYNC_STATS_COLUMNS, SYNC_STAGE_COLUMNS.length);
+        for (int i = 0; i < SYNC_STAGE_COLUMNS.length; i++) {
+            String column = SYNC_STAGE_COLUMNS[i];
+            Cursor cursor = db.query(WeatherContract.SyncJournalEntry.TABLE_NAME,
+                    new String[]{column},
+                    column + " IS NOT NULL AND "
+                            + WeatherContract.SyncJournalEntry.COLUMN_START_TIME + " >= ?",
+                    new String[]{startTime},
+                    null,
+                    null,
+                    column + " ASC");
+            try {
+                long[] times = new long[cursor.getCount()];
+                for (int j = 0; cursor.moveToNext(); j++) {
+                    times[j] = cursor.getLong(0);
+                }
+                stats.addRow(new Object[]{i, column, times.length, percentile(times, 50),
+                        percentile(times, 95), times.length > 0 ? times[times.length - 1] : null});
+            } finally {
+                cursor.close();
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @param sorted Values in ascending order
+     * @param percent Percentile to pick, 1-100
+     * @return the nearest-rank percentile of the values, or null if there are none
+     */
+    static Long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return null;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -130,6 +203,10 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_JOURNAL, SYNC_JOURNAL);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC_JOURNAL + "/" + WeatherContract.PATH_STATS,
+                SYNC_JOURNAL_STATS);
         return matcher;
     }
 
@@ -140,6 +217,8 @@ public class WeatherProvider extends ContentProvider {
     @Override
     public boolean onCreate() {
         mOpenHelper = new WeatherDbHelper(getContext());
+        // Providers are created whenever the process starts, so this covers every component
+        TimeChangeReceiver.register(getContext());
         return true;
     }
 
@@ -164,6 +243,10 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case SYNC_JOURNAL:
+                return WeatherContract.SyncJournalEntry.CONTENT_TYPE;
+            case SYNC_JOURNAL_STATS:
+                return WeatherContract.SyncJournalEntry.STATS_CONTENT_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -213,6 +296,24 @@ public class WeatherProvider extends ContentProvider {
                 );
                 break;
             }
+            // "sync_journal"
+            case SYNC_JOURNAL: {
+                retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.SyncJournalEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                );
+                break;
+            }
+            // "sync_journal/stats"
+            case SYNC_JOURNAL_STATS: {
+                retCursor = getSyncJournalStats(uri);
+                break;
+            }
 
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -248,6 +349,18 @@ public class WeatherProvider extends ContentProvider {
                     throw new android.database.SQLException("Failed to insert row into " + uri);
                 break;
             }
+            case SYNC_JOURNAL: {
+                long _id = db.insert(WeatherContract.SyncJournalEntry.TABLE_NAME, null, values);
+                if ( _id > 0 )
+                    returnUri = WeatherContract.SyncJournalEntry.buildSyncJournalUri(_id);
+                else
+                    throw new android.database.SQLException("Failed to insert row into " + uri);
+                // Row ids only ever grow, so everything this far behind the new row is old
+                db.delete(WeatherContract.SyncJournalEntry.TABLE_NAME,
+                        WeatherContract.SyncJournalEntry._ID + " <= ?",
+                        new String[]{Long.toString(_id - MAX_SYNC_JOURNAL_ROWS)});
+                break;
+            }
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -271,6 +384,10 @@ public class WeatherProvider extends ContentProvider {
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
                 break;
+            case SYNC_JOURNAL:
+                rowsDeleted = db.delete(
+                        WeatherContract.SyncJournalEntry.TABLE_NAME, selection, selectionArgs);
+                break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
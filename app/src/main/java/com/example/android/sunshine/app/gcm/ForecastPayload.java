@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.gcm;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A forecast carried in a push message, so it can be stored without fetching it.
+ *
+ * GCM messages are limited to 4KB, so the format is compact: each day is an array rather than an
+ * object.  Values are in the units of the OpenWeatherMap metric response the sync adapter stores.
+ * <pre>
+ * {
+ *   "v": 1,
+ *   "loc": "94043",            // location setting the forecast is for
+ *   "city": "Mountain View",
+ *   "lat": 37.39, "lon": -122.08,
+ *   "day": 16800,              // calendar date of the first day, as days since 1970-01-01
+ *   "days": [
+ *     // weather id, high, low, humidity, pressure, wind speed, wind degrees, description
+ *     [800, 21.5, 12.1, 55, 1015.2, 3.4, 270, "Clear"],
+ *     ...
+ *   ]
+ * }
+ * </pre>
+ * A payload that doesn't fit the format, or has values no forecast could have, is rejected as a
+ * whole; a partial forecast is worse than the one we already have.
+ */
+public class ForecastPayload {
+    private static final String KEY_VERSION = "v";
+    private static final String KEY_LOCATION = "loc";
+    private static final String KEY_CITY = "city";
+    private static final String KEY_LATITUDE = "lat";
+    private static final String KEY_LONGITUDE = "lon";
+    private static final String KEY_FIRST_DAY = "day";
+    private static final String KEY_DAYS = "days";
+
+    // Positions in a day's array
+    private static final int DAY_WEATHER_ID = 0;
+    private static final int DAY_HIGH = 1;
+    private static final int DAY_LOW = 2;
+    private static final int DAY_HUMIDITY = 3;
+    private static final int DAY_PRESSURE = 4;
+    private static final int DAY_WIND_SPEED = 5;
+    private static final int DAY_WIND_DEGREES = 6;
+    private static final int DAY_DESCRIPTION = 7;
+    private static final int DAY_LENGTH = 8;
+
+    // Newest payload version we understand
+    private static final int VERSION = 1;
+    // The sync adapter asks for two weeks; allow some more, but not an unbounded amount
+    private static final int MAX_DAYS = 16;
+
+    public final String locationSetting;
+    public final String cityName;
+    public final double latitude;
+    public final double longitude;
+    /**
+     * Calendar date of the first day, as an epoch day.  Stored as that date in local time.
+     */
+    public final int firstDay;
+    /**
+     * The weather columns of each day, without the location or date.
+     */
+    public final ContentValues[] days;
+
+    private ForecastPayload(String locationSetting, String cityName, double latitude,
+                            double longitude, int firstDay, ContentValues[] days) {
+        this.locationSetting = locationSetting;
+        this.cityName = cityName;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.firstDay = firstDay;
+        this.days = days;
+    }
+
+    /**
+     * @throws JSONException if the payload isn't a valid forecast
+     */
+    public static ForecastPayload parse(String json) throws JSONException {
+        JSONObject payload = new JSONObject(json);
+        int version = payload.getInt(KEY_VERSION);
+        if (version > VERSION) {
+            throw new JSONException("Unsupported forecast payload version " + version);
+        }
+
+        String locationSetting = payload.getString(KEY_LOCATION);
+        String cityName = payload.getString(KEY_CITY);
+        if (locationSetting.length() == 0 || cityName.length() == 0) {
+            throw new JSONException("Forecast payload without a location");
+        }
+        double latitude = payload.getDouble(KEY_LATITUDE);
+        double longitude = payload.getDouble(KEY_LONGITUDE);
+        check(latitude, -90, 90, KEY_LATITUDE);
+        check(longitude, -180, 180, KEY_LONGITUDE);
+        int firstDay = payload.getInt(KEY_FIRST_DAY);
+
+        JSONArray daysJson = payload.getJSONArray(KEY_DAYS);
+        if (daysJson.length() == 0 || daysJson.length() > MAX_DAYS) {
+            throw new JSONException("Forecast payload with " + daysJson.length() + " days");
+        }
+        ContentValues[] days = new ContentValues[daysJson.length()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = parseDay(daysJson.getJSONArray(i));
+        }
+        return new ForecastPayload(locationSetting, cityName, latitude, longitude, firstDay, days);
+    }
+
+    private static ContentValues parseDay(JSONArray day) throws JSONException {
+        if (day.length() != DAY_LENGTH) {
+            throw new JSONException("Forecast day with " + day.length() + " values");
+        }
+        int weatherId = day.getInt(DAY_WEATHER_ID);
+        double high = day.getDouble(DAY_HIGH);
+        double low = day.getDouble(DAY_LOW);
+        int humidity = day.getInt(DAY_HUMIDITY);
+        double pressure = day.getDouble(DAY_PRESSURE);
+        double windSpeed = day.getDouble(DAY_WIND_SPEED);
+        double windDegrees = day.getDouble(DAY_WIND_DEGREES);
+        String description = day.getString(DAY_DESCRIPTION);
+
+        // OpenWeatherMap condition codes are three digits
+        check(weatherId, 200, 999, "weather id");
+        check(high, -100, 100, "high");
+        check(low, -100, high, "low");
+        check(humidity, 0, 100, "humidity");
+        check(pressure, 0, 2000, "pressure");
+        check(windSpeed, 0, 200, "wind speed");
+        check(windDegrees, 0, 360, "wind degrees");
+
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
+        values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+        values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDegrees);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
+        values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
+        values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
+        values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        return values;
+    }
+
+    private static void check(double value, double min, double max, String name)
+            throws JSONException {
+        // Written so that NaN fails too
+        if (!(value >= min && value <= max)) {
+            throw new JSONException("Forecast " + name + " out of range: " + value);
+        }
+    }
+}
@@ -29,18 +29,32 @@ import android.widget.Toast;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.sync.ForecastIngestor;
+import com.example.android.sunshine.app.sync.SyncTickleService;
 import com.google.android.gms.gcm.GcmListenerService;
 
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MyGcmListenerService extends GcmListenerService {
 
     private static final String TAG = "MyGcmListenerService";
 
+    private static final String EXTRA_TYPE = "type";
     private static final String EXTRA_DATA = "data";
     private static final String EXTRA_WEATHER = "weather";
     private static final String EXTRA_LOCATION = "location";
+    private static final String EXTRA_LOCATIONS = "locations";
+
+    // Message types.  Messages without a type are alerts, as they were before types existed.
+    private static final String TYPE_ALERT = "alert";
+    private static final String TYPE_FORECAST = "forecast";
+    private static final String TYPE_TICKLE = "tickle";
 
     public static final int NOTIFICATION_ID = 1;
 
@@ -62,23 +76,98 @@ public class MyGcmListenerService extends GcmListenerService {
             }
             // Not a bad idea to check that the message is coming from your server.
             if ((senderId).equals(from)) {
-                // Process message and then post a notification of the received message.
-                try {
-                    JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
-                    String weather = jsonObject.getString(EXTRA_WEATHER);
-                    String location = jsonObject.getString(EXTRA_LOCATION);
-                    String alert =
-                            String.format(getString(R.string.gcm_weather_alert), weather, location);
-                    sendNotification(alert);
-                } catch (JSONException e) {
-                    // JSON parsing failed, so we just let this message go, since GCM is not one
-                    // of our critical features.
+                String type = data.getString(EXTRA_TYPE);
+                if (type == null) {
+                    type = TYPE_ALERT;
+                }
+                if (TYPE_FORECAST.equals(type)) {
+                    storeForecast(data.getString(EXTRA_DATA));
+                } else if (TYPE_TICKLE.equals(type)) {
+                    requestSync(data.getString(EXTRA_DATA));
+                } else if (TYPE_ALERT.equals(type)) {
+                    // Process message and then post a notification of the received message.
+                    try {
+                        JSONObject jsonObject = new JSONObject(data.getString(EXTRA_DATA));
+                        String weather = jsonObject.getString(EXTRA_WEATHER);
+                        String location = jsonObject.getString(EXTRA_LOCATION);
+                        String alert = String.format(getString(R.string.gcm_weather_alert),
+                                weather, location);
+                        sendNotification(alert);
+                    } catch (JSONException e) {
+                        // JSON parsing failed, so we just let this message go, since GCM is not
+                        // one of our critical features.
+                    }
+                } else {
+                    Log.w(TAG, "Ignoring message of type " + type);
                 }
             }
             Log.i(TAG, "Received: " + data.toString());
         }
     }
 
+    /**
+     * Stores a forecast that came with the message, the same way the sync adapter stores the
+     * ones it fetches, so it shows up without waiting for the next sync.  Messages are handled
+     * off the main thread, so this can write to the database directly.
+     *
+     * @param json The forecast, as described in {@link ForecastPayload}
+     */
+    private void storeForecast(String json) {
+        if (json == null) {
+            Log.w(TAG, "Forecast message without a forecast");
+            return;
+        }
+        ForecastPayload payload;
+        try {
+            payload = ForecastPayload.parse(json);
+        } catch (JSONException e) {
+            Log.w(TAG, "Ignoring invalid forecast", e);
+            return;
+        }
+        // Only the preferred location is ever shown, and the server may not know the user has
+        // moved on from the one it pushes.
+        if (!payload.locationSetting.equals(Utility.getPreferredLocation(this))) {
+            Log.d(TAG, "Ignoring forecast for " + payload.locationSetting);
+            return;
+        }
+
+        ForecastIngestor ingestor = new ForecastIngestor(this);
+        long locationId = ingestor.addLocation(payload.locationSetting, payload.cityName,
+                payload.latitude, payload.longitude);
+        ForecastIngestor.Result result =
+                ingestor.ingest(locationId, payload.firstDay, payload.days);
+        ingestor.notifyUpdated();
+        Log.d(TAG, "Stored pushed forecast. " + result.inserted + " Inserted, "
+                + result.updated + " Updated");
+    }
+
+    /**
+     * Queues a sync of the locations named in the message.  Tickles tend to come in bursts, so
+     * they go through {@link SyncTickleService}, which syncs each location once per burst.
+     *
+     * @param json An object whose "locations" array holds location settings to sync.  Without
+     *             it, the preferred location is synced.
+     */
+    private void requestSync(String json) {
+        List<String> locations = new ArrayList<>();
+        try {
+            JSONObject jsonObject = new JSONObject(json != null ? json : "{}");
+            JSONArray locationsJson = jsonObject.optJSONArray(EXTRA_LOCATIONS);
+            if (locationsJson != null) {
+                for (int i = 0; i < locationsJson.length(); i++) {
+                    locations.add(locationsJson.getString(i));
+                }
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Ignoring invalid tickle", e);
+            return;
+        }
+        if (locations.isEmpty()) {
+            locations.add(Utility.getPreferredLocation(this));
+        }
+        SyncTickleService.enqueue(this, locations);
+    }
+
     /**
      *  Put the message into a notification and post it.
      *  This is just one simple example of what you might choose to do with a GCM message.
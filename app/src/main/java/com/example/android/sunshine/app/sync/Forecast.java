@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+
+/**
+ * A forecast as returned by a {@link ForecastSource}, ready to hand to {@link ForecastIngestor}.
+ */
+final class Forecast {
+    private static final ContentValues[] NO_DAYS = new ContentValues[0];
+
+    // LOCATION_STATUS_OK, or why the server didn't return a forecast
+    @SunshineSyncAdapter.LocationStatus
+    final int status;
+
+    final String cityName;
+    final double latitude;
+    final double longitude;
+    // Day number of the first day, as in DayCalendar
+    final int firstDay;
+    // One weather row per day, without the location and date, which the ingestor fills in
+    final ContentValues[] days;
+
+    Forecast(String cityName, double latitude, double longitude, int firstDay,
+             ContentValues[] days) {
+        this(SunshineSyncAdapter.LOCATION_STATUS_OK, cityName, latitude, longitude, firstDay,
+                days);
+    }
+
+    private Forecast(@SunshineSyncAdapter.LocationStatus int status, String cityName,
+                     double latitude, double longitude, int firstDay, ContentValues[] days) {
+        this.status = status;
+        this.cityName = cityName;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.firstDay = firstDay;
+        this.days = days;
+    }
+
+    /**
+     * @param status Why the server didn't return a forecast
+     */
+    static Forecast failed(@SunshineSyncAdapter.LocationStatus int status) {
+        return new Forecast(status, null, 0, 0, 0, NO_DAYS);
+    }
+}
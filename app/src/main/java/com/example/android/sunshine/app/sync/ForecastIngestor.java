@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.net.Uri;
+import android.os.Build;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+import com.example.android.sunshine.core.DayCalendar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a forecast into the weather database and tells everything that shows it.
+ *
+ * This is the one way forecasts get into the database, whether they were fetched by
+ * {@link SunshineSyncAdapter} or pushed to us, so both end up stored, trimmed and announced the
+ * same way.  It does disk and provider I/O, so it must not be used on the main thread.
+ */
+public class ForecastIngestor {
+    /**
+     * How an ingest changed the stored forecast, counted in days.
+     */
+    public static final class Result {
+        // Days that weren't stored before
+        public int inserted;
+        // Days whose stored forecast was replaced with a different one
+        public int updated;
+        // Days whose stored forecast was already the same
+        public int unchanged;
+
+        /**
+         * @return whether anything that is shown changed
+         */
+        public boolean isChanged() {
+            return inserted > 0 || updated > 0;
+        }
+    }
+
+    private final Context mContext;
+
+    public ForecastIngestor(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Helper method to handle insertion of a new location in the weather database.
+     *
+     * @param locationSetting The location string used to request updates from the server.
+     * @param cityName A human-readable city name, e.g "Mountain View"
+     * @param lat the latitude of the city
+     * @param lon the longitude of the city
+     * @return the row ID of the added location.
+     */
+    public long addLocation(String locationSetting, String cityName, double lat, double lon) {
+        long start = SyncTrace.begin(SyncTrace.STAGE_ADD_LOCATION);
+        try {
+            return addLocationTraced(locationSetting, cityName, lat, lon);
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_ADD_LOCATION, start);
+        }
+    }
+
+    private long addLocationTraced(String locationSetting, String cityName, double lat,
+                                   double lon) {
+        long locationId;
+
+        // First, check if the location with this city name exists in the db
+        Cursor locationCursor = mContext.getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry._ID},
+                WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+                new String[]{locationSetting},
+                null);
+
+        if (locationCursor.moveToFirst()) {
+            int locationIdIndex = locationCursor.getColumnIndex(WeatherContract.LocationEntry._ID);
+            locationId = locationCursor.getLong(locationIdIndex);
+        } else {
+            // Now that the content provider is set up, inserting rows of data is pretty simple.
+            // First create a ContentValues object to hold the data you want to insert.
+            ContentValues locationValues = new ContentValues();
+
+            // Then add the data, along with the corresponding name of the data type,
+            // so the content provider knows what kind of value is being inserted.
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+            locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+
+            // Finally, insert location data into the database.
+            Uri insertedUri = mContext.getContentResolver().insert(
+                    WeatherContract.LocationEntry.CONTENT_URI,
+                    locationValues
+            );
+
+            // The resulting URI contains the ID for the row.  Extract the locationId from the Uri.
+            locationId = ContentUris.parseId(insertedUri);
+        }
+
+        locationCursor.close();
+        return locationId;
+    }
+
+    /**
+     * Stores consecutive days of forecast for a location, and deletes everything before
+     * yesterday so we don't build up an endless history.  Days whose stored forecast is
+     * already the same aren't written again.
+     *
+     * @param locationId Row ID of the location, from {@link #addLocation}
+     * @param firstDay Local epoch day of the first forecast
+     * @param days One set of weather columns per day.  The location and date columns are filled
+     *             in here.
+     * @return how the stored forecast changed
+     */
+    public Result ingest(long locationId, int firstDay, ContentValues[] days) {
+        Result result = new Result();
+        if (days.length == 0) {
+            return result;
+        }
+        for (int i = 0; i < days.length; i++) {
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            days[i].put(WeatherContract.WeatherEntry.COLUMN_DATE,
+                    DayCalendar.startOfDay(firstDay + i));
+        }
+
+        List<ContentValues> changed;
+        long start = SyncTrace.begin(SyncTrace.STAGE_DIFF);
+        try {
+            changed = diff(locationId, days, result);
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_DIFF, start);
+        }
+
+        if (!changed.isEmpty()) {
+            start = SyncTrace.begin(SyncTrace.STAGE_BULK_INSERT);
+            try {
+                mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                        changed.toArray(new ContentValues[changed.size()]));
+            } finally {
+                SyncTrace.end(SyncTrace.STAGE_BULK_INSERT, start);
+            }
+        }
+
+        start = SyncTrace.begin(SyncTrace.STAGE_DELETE);
+        try {
+            mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                    WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                    new String[] {Long.toString(DayCalendar.startOfDay(DayCalendar.today() - 1))});
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_DELETE, start);
+        }
+        return result;
+    }
+
+    /**
+     * Compares days against what is stored for them, counting them into the result.
+     * @return the days that are new or different
+     */
+    private List<ContentValues> diff(long locationId, ContentValues[] days, Result result) {
+        // ContentValues.keySet() is API 11, so take the column names from the entries instead
+        List<String> columns = new ArrayList<>(days[0].size());
+        for (Map.Entry<String, Object> column : days[0].valueSet()) {
+            columns.add(column.getKey());
+        }
+        String firstDate = days[0].getAsString(WeatherContract.WeatherEntry.COLUMN_DATE);
+        String lastDate =
+                days[days.length - 1].getAsString(WeatherContract.WeatherEntry.COLUMN_DATE);
+
+        Map<Long, ContentValues> stored = new HashMap<>();
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                columns.toArray(new String[columns.size()]),
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? AND "
+                        + WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[] {Long.toString(locationId), firstDate, lastDate},
+                null);
+        if (cursor != null) {
+            try {
+                int dateIndex = cursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
+                while (cursor.moveToNext()) {
+                    ContentValues values = new ContentValues();
+                    DatabaseUtils.cursorRowToContentValues(cursor, values);
+                    stored.put(cursor.getLong(dateIndex), values);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        List<ContentValues> changed = new ArrayList<>(days.length);
+        for (ContentValues day : days) {
+            ContentValues old =
+                    stored.get(day.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+            if (old == null) {
+                result.inserted++;
+                changed.add(day);
+            } else if (!isSame(day, old)) {
+                result.updated++;
+                changed.add(day);
+            } else {
+                result.unchanged++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @param stored Values read back from the database, where every column comes out as a
+     *               string, so numbers are compared by value rather than by how they print
+     */
+    private static boolean isSame(ContentValues day, ContentValues stored) {
+        for (Map.Entry<String, Object> column : day.valueSet()) {
+            Object value = column.getValue();
+            String storedValue = stored.getAsString(column.getKey());
+            if (value == null || storedValue == null) {
+                if (value != storedValue) {
+                    return false;
+                }
+            } else if (value instanceof Number) {
+                try {
+                    if (((Number) value).doubleValue() != Double.parseDouble(storedValue)) {
+                        return false;
+                    }
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            } else if (!value.toString().equals(storedValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tells the widgets, Muzei, the notification and the watch face that the forecast was synced.
+     * They need telling even when it didn't change, since what they show also depends on the day
+     * and on settings.
+     */
+    public void notifyUpdated() {
+        long start = SyncTrace.begin(SyncTrace.STAGE_UPDATE_WIDGETS);
+        try {
+            updateWidgets();
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_UPDATE_WIDGETS, start);
+        }
+        start = SyncTrace.begin(SyncTrace.STAGE_UPDATE_MUZEI);
+        try {
+            updateMuzei();
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_UPDATE_MUZEI, start);
+        }
+        start = SyncTrace.begin(SyncTrace.STAGE_NOTIFY_WEATHER);
+        try {
+            notifyWeather();
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_NOTIFY_WEATHER, start);
+        }
+    }
+
+    private void updateWidgets() {
+        // Setting the package ensures that only components in our app will receive the broadcast
+        Intent dataUpdatedIntent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(mContext.getPackageName());
+        mContext.sendBroadcast(dataUpdatedIntent);
+
+        WatchFaceSyncService.start(mContext);
+    }
+
+    private void updateMuzei() {
+        // Muzei is only compatible with Jelly Bean MR1+ devices, so there's no need to update the
+        // Muzei background on lower API level devices
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            mContext.startService(new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                    .setClass(mContext, WeatherMuzeiSource.class));
+        }
+    }
+
+    private void notifyWeather() {
+        // The notification may need to download its large icon, so it is built by its own
+        // service rather than on the sync thread.
+        WeatherNotificationService.start(mContext);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+
+/**
+ * Where {@link SunshineSyncAdapter} gets forecasts from.
+ *
+ * The adapter syncs from {@link OwmForecastSource} unless it's handed another source, which is
+ * how syncs are run against recorded responses with {@link ReplayForecastSource}.
+ */
+interface ForecastSource {
+    /**
+     * Fetches and parses the forecast for a location.  Called on the sync thread, one location
+     * at a time.
+     *
+     * @param locationSetting The location string used to request updates from the server.
+     * @param run The sync to time the fetch and parse in, and count the bytes read in
+     * @return the forecast, or why there is none
+     * @throws IOException if the forecast couldn't be fetched
+     * @throws JSONException if the response couldn't be parsed
+     */
+    Forecast fetch(String locationSetting, SyncRun run) throws IOException, JSONException;
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.core.DayCalendar;
+import com.example.android.sunshine.core.OwmForecast;
+
+import org.json.JSONException;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Parses OpenWeatherMap daily forecast responses, whether they were just fetched or recorded,
+ * into weather rows.  The parsing itself is done by {@link OwmForecast}.
+ */
+final class OwmForecastParser {
+
+    /**
+     * @param forecastJsonStr The response body; empty if the server sent nothing
+     * @param run The sync to time the parse in
+     */
+    static Forecast parse(String forecastJsonStr, SyncRun run) throws JSONException {
+        if (forecastJsonStr.length() == 0) {
+            // Stream was empty.  No point in parsing.
+            return Forecast.failed(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN);
+        }
+
+        long traceStart = SyncTrace.begin(SyncTrace.STAGE_PARSE);
+        try {
+            long start = run.start();
+            OwmForecast owmForecast = OwmForecast.parse(forecastJsonStr);
+            switch (owmForecast.code) {
+                case HttpURLConnection.HTTP_OK:
+                    break;
+                case HttpURLConnection.HTTP_NOT_FOUND:
+                    return Forecast.failed(SunshineSyncAdapter.LOCATION_STATUS_INVALID);
+                default:
+                    return Forecast.failed(SunshineSyncAdapter.LOCATION_STATUS_SERVER_DOWN);
+            }
+
+            ContentValues[] days = new ContentValues[owmForecast.days.length];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = toContentValues(owmForecast.days[i]);
+            }
+
+            // OWM returns daily forecasts based upon the local time of the city that is being
+            // asked for, which means that we need to know the GMT offset to translate this data
+            // properly.
+
+            // Since this data is also sent in-order and the first day is always the
+            // current day, we're going to take advantage of that to get a nice
+            // normalized UTC date for all of our weather.
+
+            // we start at the day returned by local time. Otherwise this is a mess.
+            int startDay = DayCalendar.today();
+            run.endParse(start);
+
+            return new Forecast(owmForecast.cityName, owmForecast.latitude,
+                    owmForecast.longitude, startDay, days);
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_PARSE, traceStart);
+        }
+    }
+
+    private static ContentValues toContentValues(OwmForecast.Day day) {
+        ContentValues weatherValues = new ContentValues();
+
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, day.humidity);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, day.pressure);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, day.windSpeed);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, day.windDirection);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, day.high);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, day.low);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, day.description);
+        weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, day.weatherId);
+        return weatherValues;
+    }
+
+    private OwmForecastParser() {
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * Fetches forecasts from OpenWeatherMap's daily forecast API.
+ */
+class OwmForecastSource implements ForecastSource {
+    // Possible parameters are avaiable at OWM's forecast API page, at
+    // http://openweathermap.org/API#forecast
+    static final String FORECAST_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily?";
+    private static final String QUERY_PARAM = "q";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+    private static final String APPID_PARAM = "APPID";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    private final String mBaseUrl;
+    private final SyncHttpClient mClient = new SyncHttpClient();
+
+    OwmForecastSource() {
+        this(FORECAST_BASE_URL);
+    }
+
+    /**
+     * @param baseUrl URL of a server with the same API as FORECAST_BASE_URL, such as a local
+     *                stand-in for it
+     */
+    OwmForecastSource(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    @Override
+    public Forecast fetch(String locationSetting, SyncRun run)
+            throws IOException, JSONException {
+        // Construct the URL for the OpenWeatherMap query
+        Uri builtUri = Uri.parse(mBaseUrl).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationSetting)
+                .appendQueryParameter(FORMAT_PARAM, FORMAT)
+                .appendQueryParameter(UNITS_PARAM, UNITS)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        URL url = new URL(builtUri.toString());
+
+        // Will contain the raw JSON response as a string.
+        String forecastJsonStr;
+        long fetchStart = SyncTrace.begin(SyncTrace.STAGE_FETCH);
+        try {
+            forecastJsonStr = mClient.get(url, run);
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_FETCH, fetchStart);
+        }
+
+        return OwmForecastParser.parse(forecastJsonStr, run);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.net.Uri;
+import android.os.SystemClock;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Serves recorded OpenWeatherMap responses from files, as if they came over a network with the
+ * given latency and bandwidth, so that syncs can be run and timed the same way every time
+ * without a network.
+ *
+ * The response for a location is read from {@link #getFile(String)}, or from
+ * {@link #DEFAULT_FILE_NAME} in the same directory when there is no recording for it.  A
+ * location with neither fails to fetch, like one the server is unreachable for.
+ */
+class ReplayForecastSource implements ForecastSource {
+    static final String DEFAULT_FILE_NAME = "default.json";
+    private static final String FILE_SUFFIX = ".json";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final File mDirectory;
+    private final long mLatencyMillis;
+    private final long mBytesPerSecond;
+
+    /**
+     * @param directory Where the recorded responses are
+     * @param latencyMillis How long to wait before a response starts
+     * @param bytesPerSecond How fast to serve responses, or 0 to serve them as fast as they
+     *                       can be read
+     */
+    ReplayForecastSource(File directory, long latencyMillis, long bytesPerSecond) {
+        mDirectory = directory;
+        mLatencyMillis = latencyMillis;
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return the file holding the recorded response for the location
+     */
+    File getFile(String locationSetting) {
+        return new File(mDirectory, Uri.encode(locationSetting) + FILE_SUFFIX);
+    }
+
+    @Override
+    public Forecast fetch(String locationSetting, SyncRun run)
+            throws IOException, JSONException {
+        File file = getFile(locationSetting);
+        if (!file.exists()) {
+            file = new File(mDirectory, DEFAULT_FILE_NAME);
+        }
+
+        String forecastJsonStr;
+        long fetchStart = SyncTrace.begin(SyncTrace.STAGE_FETCH);
+        try {
+            long start = run.start();
+            InputStream in = new FileInputStream(file);
+            try {
+                SystemClock.sleep(mLatencyMillis);
+                run.endTtfb(start);
+
+                start = run.start();
+                forecastJsonStr = read(in, run);
+                run.endDownload(start);
+            } finally {
+                in.close();
+            }
+        } finally {
+            SyncTrace.end(SyncTrace.STAGE_FETCH, fetchStart);
+        }
+
+        return OwmForecastParser.parse(forecastJsonStr, run);
+    }
+
+    /**
+     * Reads the response, no faster than the bandwidth allows.
+     */
+    private String read(InputStream in, SyncRun run) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long start = SystemClock.elapsedRealtime();
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            total += read;
+            if (mBytesPerSecond > 0) {
+                // Wait until the bytes read so far would have arrived
+                long wait = start + total * 1000 / mBytesPerSecond
+                        - SystemClock.elapsedRealtime();
+                if (wait > 0) {
+                    SystemClock.sleep(wait);
+                }
+            }
+        }
+        run.bytes = total;
+        return out.toString("UTF-8");
+    }
+}
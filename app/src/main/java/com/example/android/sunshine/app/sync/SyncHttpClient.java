@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Fetches text over HTTP for syncs, with as few bytes over the air and as little garbage as it
+ * can.
+ *
+ * <ul>
+ * <li>Responses are requested gzip or deflate compressed, and decompressed here, so that the
+ * bytes counted for the sync journal are the ones that were actually transferred.</li>
+ * <li>Bodies are read through byte buffers shared by every client, and decoded from UTF-8 a
+ * buffer at a time straight into one reused StringBuilder, instead of line by line.</li>
+ * <li>Connections are never disconnected once a body has been read to its end; closing its
+ * stream hands the connection back to HttpURLConnection's pool, so the next request of the same
+ * sync to the same host skips the connect.</li>
+ * </ul>
+ *
+ * A client must only be used by one thread at a time; the sync adapter syncs one location after
+ * the other, so its source keeps one.
+ */
+class SyncHttpClient {
+    private static final String LOG_TAG = SyncHttpClient.class.getSimpleName();
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    // A builder grown bigger than this by an unusually long response isn't kept for the next one
+    private static final int MAX_RETAINED_CHARS = 256 * 1024;
+
+    private static final ArrayDeque<byte[]> sBuffers = new ArrayDeque<>(MAX_POOLED_BUFFERS);
+
+    private final CharsetDecoder mDecoder = Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer mChars = CharBuffer.allocate(BUFFER_SIZE);
+    private StringBuilder mText = new StringBuilder(BUFFER_SIZE);
+
+    /**
+     * Fetches a URL, timing each stage of the request in the sync and counting the bytes it
+     * transferred.
+     *
+     * @return the response body; empty if there was none
+     * @throws IOException if the request failed, or the server answered with an error status
+     */
+    String get(URL url, SyncRun run) throws IOException {
+        // Resolve the host ahead of the connection, to time the lookup on its own.  The
+        // connection then gets the address from the resolver's cache.
+        long start = run.start();
+        InetAddress.getByName(url.getHost());
+        run.endDns(start);
+
+        HttpURLConnection urlConnection = null;
+        boolean reusable = false;
+        try {
+            // Opening the connection takes one from the pool if an earlier request left one
+            start = run.start();
+            urlConnection = (HttpURLConnection) url.openConnection();
+            urlConnection.setRequestMethod("GET");
+            // Asking for an encoding ourselves turns off HttpURLConnection's transparent gzip,
+            // which would hide the compressed size and not offer deflate
+            urlConnection.setRequestProperty("Accept-Encoding",
+                    ENCODING_GZIP + ", " + ENCODING_DEFLATE);
+            urlConnection.connect();
+            run.endConnect(start);
+
+            // Wait for the response headers
+            start = run.start();
+            int responseCode = urlConnection.getResponseCode();
+            run.endTtfb(start);
+
+            if (responseCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                // Drain the error body, so that the connection can still be reused
+                InputStream errorStream = urlConnection.getErrorStream();
+                if (errorStream != null) {
+                    drain(errorStream);
+                }
+                reusable = true;
+                throw new IOException("HTTP " + responseCode + " for " + url.getPath());
+            }
+
+            start = run.start();
+            CountingInputStream countingStream =
+                    new CountingInputStream(urlConnection.getInputStream());
+            InputStream body = decompress(countingStream, urlConnection.getContentEncoding());
+            String text;
+            try {
+                text = readText(body);
+            } finally {
+                body.close();
+            }
+            run.bytes = countingStream.getCount();
+            run.endDownload(start);
+            reusable = true;
+            return text;
+        } finally {
+            // A connection left part way through a response can't be reused
+            if (urlConnection != null && !reusable) {
+                urlConnection.disconnect();
+            }
+        }
+    }
+
+    private static InputStream decompress(InputStream in, String contentEncoding)
+            throws IOException {
+        if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+        if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+            // HTTP's deflate is zlib wrapped, which is what Inflater expects by default
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    /**
+     * Reads a stream to its end and decodes it as UTF-8, a buffer at a time.  A character split
+     * between two reads is kept back until the rest of it arrives.
+     */
+    private String readText(InputStream in) throws IOException {
+        byte[] bytes = obtainBuffer();
+        try {
+            mDecoder.reset();
+            mText.setLength(0);
+            // Bytes from position to limit are read but not decoded yet
+            ByteBuffer input = ByteBuffer.wrap(bytes, 0, 0);
+            int read;
+            while ((read = in.read(bytes, input.limit(), bytes.length - input.limit())) != -1) {
+                input.limit(input.limit() + read);
+                decode(input, false);
+                input.compact();
+                input.flip();
+            }
+            decode(input, true);
+            mChars.clear();
+            mDecoder.flush(mChars);
+            appendChars();
+
+            String text = mText.toString();
+            if (mText.capacity() > MAX_RETAINED_CHARS) {
+                mText = new StringBuilder(BUFFER_SIZE);
+            }
+            return text;
+        } finally {
+            recycleBuffer(bytes);
+        }
+    }
+
+    private void decode(ByteBuffer input, boolean endOfInput) throws CharacterCodingException {
+        while (true) {
+            mChars.clear();
+            CoderResult result = mDecoder.decode(input, mChars, endOfInput);
+            appendChars();
+            if (result.isUnderflow()) {
+                return;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            // Overflow: the chars were appended, so decode the rest of the input
+        }
+    }
+
+    /**
+     * Appends the chars decoded into mChars, straight from its array rather than through a
+     * CharSequence, which may copy them into a String first.
+     */
+    private void appendChars() {
+        mText.append(mChars.array(), mChars.arrayOffset(), mChars.position());
+    }
+
+    private static void drain(InputStream in) {
+        byte[] bytes = obtainBuffer();
+        try {
+            while (in.read(bytes) != -1) {
+                // Nothing to keep
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Error draining error response", e);
+        } finally {
+            recycleBuffer(bytes);
+            try {
+                in.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Error closing stream", e);
+            }
+        }
+    }
+
+    private static byte[] obtainBuffer() {
+        synchronized (sBuffers) {
+            byte[] buffer = sBuffers.poll();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    private static void recycleBuffer(byte[] buffer) {
+        synchronized (sBuffers) {
+            if (sBuffers.size() < MAX_POOLED_BUFFERS) {
+                sBuffers.push(buffer);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read through it, for the sync journal.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+    }
+}
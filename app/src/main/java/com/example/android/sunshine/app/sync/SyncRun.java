@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.SyncJournalEntry;
+
+/**
+ * What happened during the sync of one location, recorded in the sync journal when the sync is
+ * over.
+ *
+ * Stages are timed with {@link #start()} and the matching end method, in elapsed realtime so
+ * that clock changes don't show up as slow syncs.  A stage that is never ended is left out of
+ * the journal, which is how syncs that failed part way are told apart.
+ */
+class SyncRun {
+    private static final String LOG_TAG = SyncRun.class.getSimpleName();
+
+    private static final long NOT_TIMED = -1;
+
+    final String trigger;
+    final String locationSetting;
+    private final long mStartTime = System.currentTimeMillis();
+    private final long mStartElapsed = SystemClock.elapsedRealtime();
+
+    private long mDnsMillis = NOT_TIMED;
+    private long mConnectMillis = NOT_TIMED;
+    private long mTtfbMillis = NOT_TIMED;
+    private long mDownloadMillis = NOT_TIMED;
+    private long mParseMillis = NOT_TIMED;
+    private long mCommitMillis = NOT_TIMED;
+
+    long bytes;
+    ForecastIngestor.Result result;
+    @SunshineSyncAdapter.LocationStatus
+    int outcome = SunshineSyncAdapter.LOCATION_STATUS_UNKNOWN;
+
+    /**
+     * @param trigger One of the {@link SyncJournalEntry} TRIGGER_ values
+     */
+    SyncRun(String trigger, String locationSetting) {
+        this.trigger = trigger;
+        this.locationSetting = locationSetting;
+    }
+
+    /**
+     * @return the start of a stage, to pass to its end method
+     */
+    long start() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    void endDns(long start) {
+        mDnsMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    void endConnect(long start) {
+        mConnectMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    void endTtfb(long start) {
+        mTtfbMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    void endDownload(long start) {
+        mDownloadMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    void endParse(long start) {
+        mParseMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    void endCommit(long start) {
+        mCommitMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    /**
+     * Adds the run to the sync journal.  A journal is a debugging aid, so failing to write it
+     * doesn't fail the sync.
+     */
+    void record(Context context) {
+        ContentValues values = new ContentValues();
+        values.put(SyncJournalEntry.COLUMN_START_TIME, mStartTime);
+        values.put(SyncJournalEntry.COLUMN_TRIGGER, trigger);
+        values.put(SyncJournalEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        putMillis(values, SyncJournalEntry.COLUMN_DNS_MILLIS, mDnsMillis);
+        putMillis(values, SyncJournalEntry.COLUMN_CONNECT_MILLIS, mConnectMillis);
+        putMillis(values, SyncJournalEntry.COLUMN_TTFB_MILLIS, mTtfbMillis);
+        putMillis(values, SyncJournalEntry.COLUMN_DOWNLOAD_MILLIS, mDownloadMillis);
+        putMillis(values, SyncJournalEntry.COLUMN_PARSE_MILLIS, mParseMillis);
+        putMillis(values, SyncJournalEntry.COLUMN_COMMIT_MILLIS, mCommitMillis);
+        values.put(SyncJournalEntry.COLUMN_TOTAL_MILLIS,
+                SystemClock.elapsedRealtime() - mStartElapsed);
+        values.put(SyncJournalEntry.COLUMN_BYTES, bytes);
+        values.put(SyncJournalEntry.COLUMN_ROWS_INSERTED, result != null ? result.inserted : 0);
+        values.put(SyncJournalEntry.COLUMN_ROWS_UPDATED, result != null ? result.updated : 0);
+        values.put(SyncJournalEntry.COLUMN_ROWS_UNCHANGED, result != null ? result.unchanged : 0);
+        values.put(SyncJournalEntry.COLUMN_OUTCOME, outcome);
+        try {
+            context.getContentResolver().insert(SyncJournalEntry.CONTENT_URI, values);
+        } catch (RuntimeException e) {
+            Log.w(LOG_TAG, "Couldn't journal sync of " + locationSetting, e);
+        }
+    }
+
+    private static void putMillis(ContentValues values, String column, long millis) {
+        if (millis == NOT_TIMED) {
+            values.putNull(column);
+        } else {
+            values.put(column, millis);
+        }
+    }
+}
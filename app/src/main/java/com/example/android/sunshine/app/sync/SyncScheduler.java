@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.android.sunshine.core.DayCalendar;
+
+import java.util.Calendar;
+
+/**
+ * Picks the period of the periodic sync from how the forecast and the user behave, and
+ * re-registers the sync whenever the period it picks changes.
+ *
+ * Four things go into it:
+ * <ul>
+ * <li>How often a sync actually changes the forecast.  A forecast that keeps changing is synced
+ * more often than one that doesn't.</li>
+ * <li>When the user opens the app.  If they usually open it within the next period, the period
+ * is cut short so that a sync lands just before.</li>
+ * <li>The time of day.  Overnight, when the user doesn't usually open the app, syncs are spaced
+ * further apart.</li>
+ * <li>Whether the device is charging on an unmetered network, when syncing is cheap.</li>
+ * </ul>
+ * The period is recomputed after every sync of the preferred location, since that's when the
+ * inputs change and the next sync gets scheduled anyway.
+ */
+public class SyncScheduler {
+    private static final String LOG_TAG = SyncScheduler.class.getSimpleName();
+
+    // Periods, in seconds, like the ones SunshineSyncAdapter registers
+    static final int MIN_INTERVAL = 60 * 60;
+    static final int MAX_INTERVAL = 12 * 60 * 60;
+
+    // How much each sync counts towards the change rate, against all the ones before it
+    private static final float CHANGE_RATE_WEIGHT = 0.25f;
+    // Assume half the syncs change something until we know better
+    private static final float INITIAL_CHANGE_RATE = 0.5f;
+
+    // Once this many app opens have been counted, every count is halved, so that old habits fade
+    private static final int MAX_OPENS = 200;
+    private static final int HOURS = 24;
+    // An hour is a usual time to open the app if it sees twice its share of the opens
+    private static final int USUAL_HOUR_FACTOR = 2;
+    // Not enough opens to tell usual hours from unusual ones
+    private static final int MIN_OPENS = 10;
+
+    // The night, when syncs are spaced out unless the user usually opens the app
+    private static final int NIGHT_START_HOUR = 0;
+    private static final int NIGHT_END_HOUR = 6;
+
+    private static final String PREFS_NAME = "sync_schedule";
+    private static final String PREF_CHANGE_RATE = "change_rate";
+    private static final String PREF_INTERVAL = "interval";
+    private static final String PREF_OPENS_PREFIX = "opens_";
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+
+    public SyncScheduler(Context context) {
+        mContext = context.getApplicationContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Records that the user opened the app now.
+     */
+    public void recordAppOpen() {
+        int[] opens = getOpens();
+        opens[Calendar.getInstance(DayCalendar.getTimeZone()).get(Calendar.HOUR_OF_DAY)]++;
+
+        int total = 0;
+        for (int count : opens) {
+            total += count;
+        }
+        SharedPreferences.Editor editor = mPrefs.edit();
+        for (int hour = 0; hour < HOURS; hour++) {
+            editor.putInt(PREF_OPENS_PREFIX + hour,
+                    total > MAX_OPENS ? opens[hour] / 2 : opens[hour]);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Records how a sync of the preferred location went, and re-registers the periodic sync if
+     * that changes its period.
+     * @param changed Whether the sync changed the stored forecast
+     */
+    public void onSyncCompleted(boolean changed) {
+        float changeRate = mPrefs.getFloat(PREF_CHANGE_RATE, INITIAL_CHANGE_RATE);
+        changeRate += CHANGE_RATE_WEIGHT * ((changed ? 1 : 0) - changeRate);
+
+        Calendar now = Calendar.getInstance(DayCalendar.getTimeZone());
+        int interval = computeInterval(now.get(Calendar.HOUR_OF_DAY), now.get(Calendar.MINUTE),
+                changeRate, isChargingUnmetered(), getOpens());
+
+        SharedPreferences.Editor editor = mPrefs.edit().putFloat(PREF_CHANGE_RATE, changeRate);
+        if (interval != mPrefs.getInt(PREF_INTERVAL, SunshineSyncAdapter.SYNC_INTERVAL)) {
+            Log.d(LOG_TAG, "Syncing every " + interval / 60 + " minutes");
+            SunshineSyncAdapter.configurePeriodicSync(mContext, interval, interval / 3);
+            editor.putInt(PREF_INTERVAL, interval);
+        }
+        editor.apply();
+    }
+
+    /**
+     * @param hour Current hour of the day, 0-23
+     * @param minute Current minute of the hour
+     * @param changeRate Share of recent syncs that changed the forecast, 0-1
+     * @param cheap Whether the device is charging on an unmetered network
+     * @param opens Number of times the app was opened in each hour of the day
+     * @return the period of the periodic sync, in seconds
+     */
+    static int computeInterval(int hour, int minute, float changeRate, boolean cheap,
+                               int[] opens) {
+        // From twice the default period for a forecast that never changes, down to half of it
+        // for one that always does
+        float interval = SunshineSyncAdapter.SYNC_INTERVAL * (2 - 1.5f * changeRate);
+        if (cheap) {
+            interval /= 2;
+        }
+
+        int total = 0;
+        for (int count : opens) {
+            total += count;
+        }
+        boolean knowsHabits = total >= MIN_OPENS;
+        boolean night = hour >= NIGHT_START_HOUR && hour < NIGHT_END_HOUR;
+        if (night && (!knowsHabits || !isUsualHour(opens, total, hour))) {
+            interval *= 2;
+        }
+        interval = Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+
+        if (knowsHabits) {
+            // Sync just before the next usual hour, if one comes up within the period
+            int untilNextHour = (60 - minute) * 60;
+            for (int ahead = 1; ahead <= HOURS; ahead++) {
+                int seconds = untilNextHour + (ahead - 1) * 60 * 60;
+                if (seconds > interval) {
+                    break;
+                }
+                if (isUsualHour(opens, total, (hour + ahead) % HOURS)) {
+                    interval = Math.max(MIN_INTERVAL, seconds);
+                    break;
+                }
+            }
+        }
+        return (int) interval;
+    }
+
+    private static boolean isUsualHour(int[] opens, int total, int hour) {
+        return opens[hour] * HOURS >= total * USUAL_HOUR_FACTOR;
+    }
+
+    private int[] getOpens() {
+        int[] opens = new int[HOURS];
+        for (int hour = 0; hour < HOURS; hour++) {
+            opens[hour] = mPrefs.getInt(PREF_OPENS_PREFIX + hour, 0);
+        }
+        return opens;
+    }
+
+    private boolean isChargingUnmetered() {
+        // The battery broadcast is sticky, so this reads its last state without registering
+        Intent battery = mContext.registerReceiver(null,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null || battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) == 0) {
+            return false;
+        }
+
+        ConnectivityManager cm =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo network = cm.getActiveNetworkInfo();
+        if (network == null || !network.isConnected()) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return !cm.isActiveNetworkMetered();
+        }
+        return network.getType() == ConnectivityManager.TYPE_WIFI;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects requests to sync particular locations, and turns each burst of them into a single
+ * expedited sync.
+ *
+ * The server tickles us whenever a forecast changes, which can be several times a minute for the
+ * same location.  The first request starts a window of {@link #COALESCE_WINDOW_MILLIS}; requests
+ * that arrive before it closes join the queue, and when it closes every queued location is synced
+ * once, in one sync.  The queue is kept in SharedPreferences, so a request isn't lost if the
+ * process dies while the window is open.
+ */
+public class SyncTickleService extends IntentService {
+    private static final String LOG_TAG = SyncTickleService.class.getSimpleName();
+
+    private static final String ACTION_FLUSH =
+            "com.example.android.sunshine.app.sync.action.FLUSH_SYNC_TICKLES";
+
+    static final long COALESCE_WINDOW_MILLIS = 30 * 1000;
+    // More than this many locations in the queue is not a tickle we should honor
+    private static final int MAX_LOCATIONS = 20;
+
+    private static final String PREFS_NAME = "sync_tickles";
+    private static final String PREF_LOCATIONS = "locations";
+    private static final String PREF_FLUSH_AT = "flush_at";
+
+    private static final int REQUEST_FLUSH = 0;
+
+    // Guards the queue between the GCM listener, which adds to it, and the flush
+    private static final Object sLock = new Object();
+
+    public SyncTickleService() {
+        super("SyncTickleService");
+    }
+
+    /**
+     * Asks for the given locations to be synced soon, together with any others asked for
+     * around the same time.
+     * @param locations Location settings to sync
+     */
+    public static void enqueue(Context context, Collection<String> locations) {
+        synchronized (sLock) {
+            SharedPreferences prefs = getPrefs(context);
+            Set<String> queued = getQueued(prefs);
+            for (String location : locations) {
+                // Line breaks would split a location in two once it reaches the sync adapter
+                if (location.length() == 0
+                        || location.contains(SunshineSyncAdapter.LOCATION_SEPARATOR)) {
+                    Log.w(LOG_TAG, "Ignoring location " + location);
+                    continue;
+                }
+                if (!queued.contains(location) && queued.size() >= MAX_LOCATIONS) {
+                    Log.w(LOG_TAG, "Sync queue full, dropping " + location);
+                    break;
+                }
+                queued.add(location);
+            }
+            if (queued.isEmpty()) {
+                return;
+            }
+
+            // Only the first request of a window schedules the flush.  If the flush time is
+            // already past or implausibly far ahead, its alarm was lost (to a reboot, or the
+            // clock being changed), so schedule it again.
+            long now = System.currentTimeMillis();
+            long flushAt = prefs.getLong(PREF_FLUSH_AT, 0);
+            SharedPreferences.Editor editor = prefs.edit()
+                    .putString(PREF_LOCATIONS, TextUtils.join(
+                            SunshineSyncAdapter.LOCATION_SEPARATOR, queued));
+            if (flushAt <= now || flushAt > now + COALESCE_WINDOW_MILLIS) {
+                flushAt = now + COALESCE_WINDOW_MILLIS;
+                editor.putLong(PREF_FLUSH_AT, flushAt);
+                AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+                // A tickle means the forecast on screen is out of date, so it's worth a wakeup
+                am.set(AlarmManager.RTC_WAKEUP, flushAt, getFlushIntent(context));
+            }
+            editor.commit();
+        }
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        if (intent == null) {
+            return;
+        }
+        try {
+            if (!ACTION_FLUSH.equals(intent.getAction())) {
+                return;
+            }
+            Set<String> queued;
+            synchronized (sLock) {
+                SharedPreferences prefs = getPrefs(this);
+                queued = getQueued(prefs);
+                prefs.edit().remove(PREF_LOCATIONS).remove(PREF_FLUSH_AT).commit();
+            }
+            Log.d(LOG_TAG, "Syncing " + queued.size() + " tickled locations");
+            // The sync manager keeps the device awake for the sync itself
+            SunshineSyncAdapter.syncLocations(this, queued);
+        } finally {
+            SyncTickleFlushReceiver.completeWakefulIntent(intent);
+        }
+    }
+
+    private static SharedPreferences getPrefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static Set<String> getQueued(SharedPreferences prefs) {
+        Set<String> queued = new LinkedHashSet<>();
+        String locations = prefs.getString(PREF_LOCATIONS, null);
+        if (locations != null) {
+            queued.addAll(Arrays.asList(locations.split(SunshineSyncAdapter.LOCATION_SEPARATOR)));
+        }
+        return queued;
+    }
+
+    /**
+     * The flush alarm goes to {@link SyncTickleFlushReceiver} rather than straight to this
+     * service, so that the device stays awake until the sync has been requested.
+     */
+    private static PendingIntent getFlushIntent(Context context) {
+        Intent intent = new Intent(context, SyncTickleFlushReceiver.class).setAction(ACTION_FLUSH);
+        return PendingIntent.getBroadcast(context, REQUEST_FLUSH, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
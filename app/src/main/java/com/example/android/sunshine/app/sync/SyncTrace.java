@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Named trace sections around each stage of a sync, plus an in-app histogram of how long each
+ * stage takes.
+ *
+ * The sections show up in systrace on Jelly Bean MR2 and later whenever the app is traced.  The
+ * histograms are only kept while enabled (by a debug preference, see SettingsActivity), in which
+ * case they cost two clock reads and a few atomic increments per stage; they can be dumped as
+ * CSV to compare builds without systrace.
+ *
+ * Every {@link #begin(int)} must be matched by an {@link #end(int, long)} on the same thread,
+ * in reverse order, so callers end sections in a finally block.
+ */
+public final class SyncTrace {
+    public static final int STAGE_PERFORM_SYNC = 0;
+    public static final int STAGE_FETCH = 1;
+    public static final int STAGE_PARSE = 2;
+    public static final int STAGE_ADD_LOCATION = 3;
+    public static final int STAGE_DIFF = 4;
+    public static final int STAGE_BULK_INSERT = 5;
+    public static final int STAGE_DELETE = 6;
+    public static final int STAGE_UPDATE_WIDGETS = 7;
+    public static final int STAGE_UPDATE_MUZEI = 8;
+    public static final int STAGE_NOTIFY_WEATHER = 9;
+    private static final int STAGES = 10;
+
+    // Section names, as they appear in systrace and the CSV
+    private static final String[] STAGE_NAMES = {
+            "onPerformSync",
+            "fetch",
+            "getWeatherDataFromJson",
+            "addLocation",
+            "diff",
+            "bulkInsert",
+            "delete",
+            "updateWidgets",
+            "updateMuzei",
+            "notifyWeather"
+    };
+
+    // Times are bucketed by powers of two of milliseconds: bucket n holds times below 2^n ms,
+    // and the last one everything slower.
+    private static final int BUCKETS = 16;
+
+    private static volatile boolean sEnabled;
+
+    private static final AtomicLongArray sBuckets = new AtomicLongArray(STAGES * BUCKETS);
+    private static final AtomicLongArray sCounts = new AtomicLongArray(STAGES);
+    private static final AtomicLongArray sTotalNanos = new AtomicLongArray(STAGES);
+    private static final AtomicLongArray sMaxNanos = new AtomicLongArray(STAGES);
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Starts a stage.
+     * @param stage One of the STAGE_ constants
+     * @return the start time to pass to {@link #end(int, long)}, or 0 when the histograms are off
+     */
+    public static long begin(int stage) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            beginSection(STAGE_NAMES[stage]);
+        }
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    public static void end(int stage, long start) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            endSection();
+        }
+        if (start == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        sCounts.incrementAndGet(stage);
+        sTotalNanos.addAndGet(stage, nanos);
+        sBuckets.incrementAndGet(stage * BUCKETS + bucketOf(nanos));
+        long max;
+        do {
+            max = sMaxNanos.get(stage);
+        } while (nanos > max && !sMaxNanos.compareAndSet(stage, max, nanos));
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void endSection() {
+        Trace.endSection();
+    }
+
+    public static void reset() {
+        for (int i = 0; i < sBuckets.length(); i++) {
+            sBuckets.set(i, 0);
+        }
+        for (int stage = 0; stage < STAGES; stage++) {
+            sCounts.set(stage, 0);
+            sTotalNanos.set(stage, 0);
+            sMaxNanos.set(stage, 0);
+        }
+    }
+
+    /**
+     * @return the histograms as CSV: a header row, then one row per stage with its count, mean
+     * and maximum, the 50th and 95th percentiles (as the upper bound of the bucket they fall in)
+     * and the count in each bucket.  Times are in milliseconds.
+     */
+    public static String dumpCsv() {
+        StringBuilder csv = new StringBuilder("stage,count,mean_ms,max_ms,p50_ms,p95_ms");
+        for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+            csv.append(",lt_").append(1 << bucket).append("ms");
+        }
+        csv.append(",ge_").append(1 << (BUCKETS - 2)).append("ms\n");
+
+        long[] buckets = new long[BUCKETS];
+        for (int stage = 0; stage < STAGES; stage++) {
+            long count = sCounts.get(stage);
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] = sBuckets.get(stage * BUCKETS + bucket);
+            }
+            csv.append(STAGE_NAMES[stage])
+                    .append(',').append(count)
+                    .append(',').append(count > 0 ? sTotalNanos.get(stage) / count / 1000000 : 0)
+                    .append(',').append(sMaxNanos.get(stage) / 1000000)
+                    .append(',').append(percentile(buckets, count, 50))
+                    .append(',').append(percentile(buckets, count, 95));
+            for (long bucketCount : buckets) {
+                csv.append(',').append(bucketCount);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * @return the upper bound, in milliseconds, of the bucket holding the given percentile, or
+     * 0 if nothing was recorded.  The last bucket has no upper bound, so its lower one is used.
+     */
+    static long percentile(long[] buckets, long count, int percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percent / 100.0 * count);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS - 1; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return 1L << bucket;
+            }
+        }
+        return 1L << (BUCKETS - 2);
+    }
+
+    static int bucketOf(long nanos) {
+        long millis = nanos / 1000000;
+        return Math.min(64 - Long.numberOfLeadingZeros(millis), BUCKETS - 1);
+    }
+
+    private SyncTrace() {
+    }
+}
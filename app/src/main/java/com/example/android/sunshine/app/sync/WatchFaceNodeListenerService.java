@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.WearableListenerService;
+
+/**
+ * Flushes a watch face push that is waiting to be retried as soon as a watch connects, rather
+ * than when its backoff runs out.
+ */
+public class WatchFaceNodeListenerService extends WearableListenerService {
+    @Override
+    public void onPeerConnected(Node peer) {
+        if (new WatchFaceRetryScheduler(this).isRetryPending()) {
+            WatchFaceSyncService.start(this);
+        }
+    }
+}
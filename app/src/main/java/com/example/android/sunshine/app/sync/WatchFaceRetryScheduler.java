@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+
+import java.util.Random;
+
+/**
+ * Schedules retries of watch face pushes that failed.
+ *
+ * Each consecutive failure doubles the delay before the next attempt, from
+ * {@link #INITIAL_DELAY_MILLIS} up to {@link #MAX_DELAY_MILLIS}, and a random part of it is
+ * dropped so that retries don't line up with other work.  Only one retry is ever pending: its
+ * alarm always uses the same PendingIntent, so scheduling again replaces it.  The alarm doesn't
+ * wake the device, and is inexact where the platform allows, since a late watch face update is
+ * cheaper than a wakeup.  The number of failures survives the process being killed.
+ */
+class WatchFaceRetryScheduler {
+    static final String ACTION_RETRY =
+            "com.example.android.sunshine.app.sync.action.RETRY_WATCH_FACE_PUSH";
+
+    static final long INITIAL_DELAY_MILLIS = 60 * 1000;
+    static final long MAX_DELAY_MILLIS = 6 * 60 * 60 * 1000;
+    // Past this many doublings the delay is capped anyway, so stop before the shift overflows
+    private static final int MAX_DOUBLINGS = 16;
+
+    private static final String PREFS_NAME = "watch_face_retry";
+    private static final String PREF_FAILURES = "failures";
+
+    private static final int REQUEST_RETRY = 0;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final Random mRandom = new Random();
+
+    WatchFaceRetryScheduler(Context context) {
+        mContext = context;
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Records a failed push and schedules the next attempt, replacing any pending one.
+     */
+    void onFailure() {
+        int failures = mPrefs.getInt(PREF_FAILURES, 0);
+        long delay = getDelay(failures, mRandom);
+        AlarmManager am = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+        am.set(AlarmManager.ELAPSED_REALTIME, SystemClock.elapsedRealtime() + delay,
+                getRetryIntent());
+        mPrefs.edit().putInt(PREF_FAILURES, failures + 1).apply();
+    }
+
+    /**
+     * Records a successful push, cancelling any pending retry and resetting the backoff.
+     */
+    void onSuccess() {
+        if (isRetryPending()) {
+            AlarmManager am = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
+            am.cancel(getRetryIntent());
+            mPrefs.edit().remove(PREF_FAILURES).apply();
+        }
+    }
+
+    /**
+     * @return true if the last push failed and hasn't been retried successfully yet
+     */
+    boolean isRetryPending() {
+        return mPrefs.getInt(PREF_FAILURES, 0) > 0;
+    }
+
+    private PendingIntent getRetryIntent() {
+        Intent intent = new Intent(mContext, WatchFaceSyncService.class).setAction(ACTION_RETRY);
+        return PendingIntent.getService(mContext, REQUEST_RETRY, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /**
+     * @param failures Number of consecutive failures so far
+     * @return how long to wait before the next attempt: somewhere between half and all of the
+     * backoff for that many failures
+     */
+    static long getDelay(int failures, Random random) {
+        long backoff = Math.min(INITIAL_DELAY_MILLIS << Math.min(failures, MAX_DOUBLINGS),
+                MAX_DELAY_MILLIS);
+        long half = backoff / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+}
@@ -1,43 +1,98 @@
 package com.example.android.sunshine.app.sync;
 
-import android.app.AlarmManager;
-import android.app.IntentService;
-import android.app.PendingIntent;
+import android.annotation.TargetApi;
+import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Process;
 
-import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.google.android.gms.common.ConnectionResult;
+import com.example.android.sunshine.core.DayCalendar;
 import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.Result;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
- * An {@link IntentService} subclass for updating weather information on a wear watchface.
+ * Service for updating weather information on a wear watchface.
+ *
+ * The watch face gets a forecast for the next {@link #FORECAST_DAYS} days, one data item per
+ * day, so that it can move on to the next day at midnight without waiting for the phone.  Each
+ * push only sends the days that changed since the last push the data layer accepted; what was
+ * last accepted, and in which payload version, is remembered in a private SharedPreferences
+ * file.
+ *
+ * Pushes run on the service's own worker thread.  Requests that arrive while a push is already
+ * queued are folded into it, since a push always sends the latest data.  The connection to the
+ * Wearable API is kept between pushes and only torn down, along with the service, once no push
+ * has been requested for {@link #IDLE_TIMEOUT_MILLIS}.
  */
-public class WatchFaceSyncService extends IntentService {
+public class WatchFaceSyncService extends Service {
     private static final String[] PROJECTION = new String[] {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
             WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
     };
     // these indices must match the projection
-    private static final int INDEX_WEATHER_ID = 0;
-    private static final int INDEX_MAX_TEMP = 1;
-    private static final int INDEX_MIN_TEMP = 2;
+    private static final int INDEX_DATE = 0;
+    private static final int INDEX_WEATHER_ID = 1;
+    private static final int INDEX_MAX_TEMP = 2;
+    private static final int INDEX_MIN_TEMP = 3;
 
-    private GoogleApiClient mGoogleApiClient;
+    // Number of days, starting today, kept on the watch
+    static final int FORECAST_DAYS = 7;
 
-    public WatchFaceSyncService() {
-        super("WatchFaceSyncService");
-    }
+    // Data layer paths and keys of the weather payload.  These must match SunshineWatchFace.
+    // The header item holds settings that apply to every day.
+    static final String WEATHER_PATH = "/weather";
+    // Followed by the local epoch day of the forecast
+    static final String DAY_PATH_PREFIX = "/weather/day/";
+    static final String KEY_VERSION = "version";
+    static final String KEY_WEATHER_ID = "weather_id";
+    static final String KEY_HIGH = "high";
+    static final String KEY_LOW = "low";
+    static final String KEY_METRIC = "metric";
+    // Bump when the payload changes in a way older watch faces can't read
+    static final int PAYLOAD_VERSION = 2;
+
+    private static final String PREFS_NAME = "watch_face_sync";
+    private static final String PREF_VERSION = "version";
+    private static final String PREF_HEADER = "header";
+    private static final String PREF_DAY_PREFIX = "day_";
+
+    private static final long PUT_TIMEOUT_SECONDS = 30;
+
+    // How long the connection is kept open after the last push.  Syncs tend to come in bursts
+    // (a sync, then a settings change, then another sync), so this is a fair bit longer than a
+    // push takes.
+    static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static final int MSG_PUSH = 1;
+    private static final int MSG_IDLE = 2;
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private WearableConnection mConnection;
+    private WatchFaceRetryScheduler mRetryScheduler;
+    private volatile int mLastStartId;
 
     public static void start(Context context) {
         Intent intent = new Intent(context, WatchFaceSyncService.class);
@@ -45,49 +100,212 @@ public class WatchFaceSyncService extends IntentService {
     }
 
     @Override
-    protected void onHandleIntent(Intent intent) {
-        if (intent != null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(this)
-                    .addApi(Wearable.API)
-                    .build();
+    public void onCreate() {
+        super.onCreate();
+        mConnection = new WearableConnection(this);
+        mRetryScheduler = new WatchFaceRetryScheduler(this);
+        mThread = new HandlerThread("WatchFaceSyncService", Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_PUSH:
+                        push();
+                        // The push before this one may have scheduled an idle timeout already,
+                        // which would stop the service early
+                        mHandler.removeMessages(MSG_IDLE);
+                        mHandler.sendEmptyMessageDelayed(MSG_IDLE, IDLE_TIMEOUT_MILLIS);
+                        return true;
+                    case MSG_IDLE:
+                        mConnection.disconnect();
+                        // Only stops if nothing was requested since the last push was queued
+                        stopSelf(mLastStartId);
+                        return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        mLastStartId = startId;
+        mHandler.removeMessages(MSG_IDLE);
+        if (!mHandler.hasMessages(MSG_PUSH)) {
+            mHandler.sendEmptyMessage(MSG_PUSH);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        mHandler.removeCallbacksAndMessages(null);
+        // A push may still be running on the thread, so the connection is torn down there,
+        // once it is done
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mConnection.disconnect();
+            }
+        });
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            quitSafely(mThread);
+        } else {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mThread.quit();
+                }
+            });
+        }
+        super.onDestroy();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static void quitSafely(HandlerThread thread) {
+        thread.quitSafely();
+    }
 
-            ConnectionResult result = mGoogleApiClient.blockingConnect(30, TimeUnit.SECONDS);
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
 
-            if (result.isSuccess()) {
-                // Retrieve data from provider
-                String locationQuery = Utility.getPreferredLocation(this);
+    private void push() {
+        GoogleApiClient googleApiClient = mConnection.connect();
+        if (googleApiClient != null && pushForecast(googleApiClient)) {
+            mRetryScheduler.onSuccess();
+        }
+        else {
+            // Whatever wasn't accepted is still different from what was last sent, so the
+            // retry picks it up.
+            mRetryScheduler.onFailure();
+        }
+    }
 
-                Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(locationQuery, System.currentTimeMillis());
+    /**
+     * Sends the header and every day of the forecast that differs from what the watch was last
+     * sent, and removes days that are now in the past.  All the requests are issued before any
+     * of them is waited on, so a push costs one round trip to the data layer rather than one
+     * per day.
+     * @return true if every request was accepted
+     */
+    private boolean pushForecast(GoogleApiClient googleApiClient) {
+        SharedPreferences sent = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (sent.getInt(PREF_VERSION, 0) != PAYLOAD_VERSION) {
+            clearSent(sent);
+        }
+        // Preference changes to make once the matching request has been accepted, and the
+        // requests themselves, in the same order.  A null value removes the preference.
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<PendingResult<? extends Result>> results = new ArrayList<>();
 
-                Cursor cursor = getContentResolver().query(weatherUri, PROJECTION, null, null, null);
+        // Temperatures are sent raw, in Celsius, and formatted on the watch
+        boolean metric = Utility.isMetric(this);
+        String header = PAYLOAD_VERSION + ":" + metric;
+        if (!header.equals(sent.getString(PREF_HEADER, null))) {
+            PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(WEATHER_PATH);
+            DataMap dataMap = putDataMapRequest.getDataMap();
+            dataMap.putInt(KEY_VERSION, PAYLOAD_VERSION);
+            dataMap.putBoolean(KEY_METRIC, metric);
+            keys.add(PREF_HEADER);
+            values.add(header);
+            results.add(Wearable.DataApi.putDataItem(googleApiClient,
+                    putDataMapRequest.asPutDataRequest()));
+        }
 
-                if (cursor.moveToFirst()) {
+        // Retrieve data from provider
+        String locationQuery = Utility.getPreferredLocation(this);
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationQuery, System.currentTimeMillis());
+        Cursor cursor = getContentResolver().query(weatherUri, PROJECTION, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext() && cursor.getPosition() < FORECAST_DAYS) {
+                    int epochDay = DayCalendar.toEpochDay(cursor.getLong(INDEX_DATE));
                     int weatherId = cursor.getInt(INDEX_WEATHER_ID);
                     double high = cursor.getDouble(INDEX_MAX_TEMP);
                     double low = cursor.getDouble(INDEX_MIN_TEMP);
 
-                    // Create JSON String
-                    String json = String.format(getString(R.string.format_json),
-                            weatherId,
-                            Utility.formatTemperature(this, high),
-                            Utility.formatTemperature(this, low));
+                    String key = PREF_DAY_PREFIX + epochDay;
+                    String day = weatherId + ":" + high + ":" + low;
+                    if (day.equals(sent.getString(key, null))) {
+                        continue;
+                    }
 
-                    // Push to Wearable
-                    PutDataRequest request = PutDataRequest.create("/weather");
-                    request.setData(json.getBytes());
+                    PutDataMapRequest putDataMapRequest =
+                            PutDataMapRequest.create(DAY_PATH_PREFIX + epochDay);
+                    DataMap dataMap = putDataMapRequest.getDataMap();
+                    dataMap.putInt(KEY_WEATHER_ID, weatherId);
+                    dataMap.putDouble(KEY_HIGH, high);
+                    dataMap.putDouble(KEY_LOW, low);
 
-                    Wearable.DataApi.putDataItem(mGoogleApiClient, request);
+                    // Push to Wearable
+                    keys.add(key);
+                    values.add(day);
+                    results.add(Wearable.DataApi.putDataItem(googleApiClient,
+                            putDataMapRequest.asPutDataRequest()));
                 }
+            } finally {
+                cursor.close();
             }
-            else {
-                // Schedule another attempt in an hour
-                Calendar calendar = Calendar.getInstance();
-                calendar.add(Calendar.HOUR, 1);
-                Intent i = new Intent(this, WatchFaceSyncService.class);
-                PendingIntent pendingIntent = PendingIntent.getService(this, 0, i, 0);
-                AlarmManager am = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
-                am.set(AlarmManager.RTC_WAKEUP, calendar.getTimeInMillis(), pendingIntent);
+        }
+
+        // Days before today are of no use to the watch anymore
+        int today = DayCalendar.today();
+        for (Map.Entry<String, ?> entry : sent.getAll().entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(PREF_DAY_PREFIX)) {
+                continue;
+            }
+            int epochDay = Integer.parseInt(key.substring(PREF_DAY_PREFIX.length()));
+            if (epochDay < today) {
+                Uri dayUri = new Uri.Builder()
+                        .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                        .path(DAY_PATH_PREFIX + epochDay)
+                        .build();
+                keys.add(key);
+                values.add(null);
+                results.add(Wearable.DataApi.deleteDataItems(googleApiClient, dayUri));
+            }
+        }
+
+        if (results.isEmpty()) {
+            return true;
+        }
+        boolean success = true;
+        SharedPreferences.Editor editor = sent.edit();
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i).await(PUT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!result.getStatus().isSuccess()) {
+                success = false;
+                continue;
+            }
+            if (values.get(i) != null) {
+                editor.putString(keys.get(i), values.get(i));
+            } else {
+                editor.remove(keys.get(i));
+            }
+        }
+        editor.apply();
+        return success;
+    }
+
+    /**
+     * Forgets what the watch was sent in an older payload version, so that every day is sent
+     * again in the current one.  The days themselves are kept, with no value, so that the ones
+     * that pass are still removed from the watch.
+     */
+    private static void clearSent(SharedPreferences sent) {
+        SharedPreferences.Editor editor = sent.edit().clear();
+        for (String key : sent.getAll().keySet()) {
+            if (key.startsWith(PREF_DAY_PREFIX)) {
+                editor.putString(key, "");
             }
         }
+        editor.putInt(PREF_VERSION, PAYLOAD_VERSION).apply();
     }
 }
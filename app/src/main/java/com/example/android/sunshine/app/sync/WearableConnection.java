@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single connection to the Wearable API that is reused across pushes, so that only the first
+ * push after a period of inactivity pays for binding to Play Services.  Its owner decides when
+ * the connection has been idle long enough to be torn down.
+ *
+ * Blocking, so only to be used from a worker thread.
+ */
+class WearableConnection {
+    private static final String LOG_TAG = WearableConnection.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private final GoogleApiClient mGoogleApiClient;
+
+    WearableConnection(Context context) {
+        mGoogleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+    }
+
+    /**
+     * Connects if not connected already, blocking until the connection is made or fails.
+     * @return the connected client, or null if the connection could not be made
+     */
+    GoogleApiClient connect() {
+        if (mGoogleApiClient.isConnected()) {
+            return mGoogleApiClient;
+        }
+        ConnectionResult result =
+                mGoogleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (!result.isSuccess()) {
+            Log.w(LOG_TAG, "Could not connect to the Wearable API: " + result);
+            return null;
+        }
+        return mGoogleApiClient;
+    }
+
+    void disconnect() {
+        if (mGoogleApiClient.isConnected() || mGoogleApiClient.isConnecting()) {
+            mGoogleApiClient.disconnect();
+        }
+    }
+}
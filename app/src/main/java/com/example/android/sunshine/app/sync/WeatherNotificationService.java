@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.SuppressLint;
+import android.app.IntentService;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.preference.PreferenceManager;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.TaskStackBuilder;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.MainActivity;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * IntentService which posts the daily weather notification once a sync has committed new data.
+ * Building the notification (and fetching its large icon) happens here, on the service's own
+ * worker thread, so that the sync itself never waits on an image download.
+ */
+public class WeatherNotificationService extends IntentService {
+    private static final String LOG_TAG = WeatherNotificationService.class.getSimpleName();
+
+    private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+    private static final int WEATHER_NOTIFICATION_ID = 3004;
+
+    // Large icons are only ever requested at the notification's own size, and there are only a
+    // handful of distinct art urls, so a few entries are enough to cover a day's worth of syncs.
+    private static final int LARGE_ICON_CACHE_SIZE = 4;
+    private static final LruCache<String, Bitmap> sLargeIconCache =
+            new LruCache<>(LARGE_ICON_CACHE_SIZE);
+
+    private static final String[] NOTIFY_WEATHER_PROJECTION = new String[] {
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
+    };
+
+    // these indices must match the projection
+    private static final int INDEX_WEATHER_ID = 0;
+    private static final int INDEX_MAX_TEMP = 1;
+    private static final int INDEX_MIN_TEMP = 2;
+    private static final int INDEX_SHORT_DESC = 3;
+
+    private int mLargeIconWidth;
+    private int mLargeIconHeight;
+
+    public WeatherNotificationService() {
+        super("WeatherNotificationService");
+    }
+
+    /**
+     * Hands the notification off to the service.  Safe to call from the sync thread: this only
+     * queues an intent and returns.
+     */
+    public static void start(Context context) {
+        context.startService(new Intent(context, WeatherNotificationService.class));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        Resources resources = getResources();
+
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        mLargeIconWidth = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? getLargeIconDimension(resources, true)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        mLargeIconHeight = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB
+                ? getLargeIconDimension(resources, false)
+                : resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+    }
+
+    @SuppressLint("InlinedApi")
+    private static int getLargeIconDimension(Resources resources, boolean width) {
+        return resources.getDimensionPixelSize(width
+                ? android.R.dimen.notification_large_icon_width
+                : android.R.dimen.notification_large_icon_height);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        //checking the last update and notify if it' the first of the day
+        if (!SettingsSnapshot.get(this).notificationsEnabled) {
+            return;
+        }
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String lastNotificationKey = getString(R.string.pref_last_notification);
+        long lastSync = prefs.getLong(lastNotificationKey, 0);
+        if (System.currentTimeMillis() - lastSync < DAY_IN_MILLIS) {
+            return;
+        }
+
+        String locationQuery = Utility.getPreferredLocation(this);
+        Uri weatherUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                locationQuery, System.currentTimeMillis());
+
+        // we'll query our contentProvider, as always
+        Cursor cursor = getContentResolver().query(weatherUri, NOTIFY_WEATHER_PROJECTION,
+                null, null, null);
+        if (cursor == null) {
+            return;
+        }
+        try {
+            if (!cursor.moveToFirst()) {
+                return;
+            }
+            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            double high = cursor.getDouble(INDEX_MAX_TEMP);
+            double low = cursor.getDouble(INDEX_MIN_TEMP);
+            String desc = cursor.getString(INDEX_SHORT_DESC);
+            postNotification(weatherId, high, low, desc, getLargeIcon(weatherId));
+
+            //refreshing last sync
+            prefs.edit().putLong(lastNotificationKey, System.currentTimeMillis()).apply();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the large icon for the given condition, already scaled to the notification's
+     * large icon size.  Icons are kept in memory, so each art url or resource is only loaded
+     * once per process.  The resource used when fetching an art url fails isn't kept, so the
+     * next notification tries the fetch again.
+     */
+    private Bitmap getLargeIcon(int weatherId) {
+        int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+        String artUrl = Utility.getArtUrlForWeatherCondition(this, weatherId);
+        String cacheKey = artUrl != null ? artUrl : Integer.toString(artResourceId);
+
+        Bitmap largeIcon = sLargeIconCache.get(cacheKey);
+        if (largeIcon != null) {
+            return largeIcon;
+        }
+
+        if (artUrl == null) {
+            largeIcon = decodeLargeIcon(artResourceId);
+        } else {
+            // Retrieve the large icon
+            try {
+                largeIcon = Glide.with(this)
+                        .load(artUrl)
+                        .asBitmap()
+                        .error(artResourceId)
+                        .fitCenter()
+                        .into(mLargeIconWidth, mLargeIconHeight).get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Error retrieving large icon from " + artUrl, e);
+                return decodeLargeIcon(artResourceId);
+            }
+        }
+        if (largeIcon != null) {
+            sLargeIconCache.put(cacheKey, largeIcon);
+        }
+        return largeIcon;
+    }
+
+    /**
+     * Decodes an art resource scaled to fit the large icon size: subsampled while decoding to
+     * the smallest power of two that isn't smaller than the icon, then scaled the rest of the way.
+     * @return the icon, or null if the resource couldn't be decoded
+     */
+    private Bitmap decodeLargeIcon(int artResourceId) {
+        // Unknown conditions have no art
+        if (artResourceId == -1) {
+            return null;
+        }
+        Resources resources = getResources();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, artResourceId, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= mLargeIconWidth
+                && options.outHeight / (sampleSize * 2) >= mLargeIconHeight) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeResource(resources, artResourceId, options);
+        if (decoded == null) {
+            return null;
+        }
+
+        // Fit it in the icon, keeping its aspect ratio
+        float scale = Math.min((float) mLargeIconWidth / decoded.getWidth(),
+                (float) mLargeIconHeight / decoded.getHeight());
+        int width = Math.max(1, Math.round(decoded.getWidth() * scale));
+        int height = Math.max(1, Math.round(decoded.getHeight() * scale));
+        if (width == decoded.getWidth() && height == decoded.getHeight()) {
+            return decoded;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    private void postNotification(int weatherId, double high, double low, String desc,
+                                  Bitmap largeIcon) {
+        Resources resources = getResources();
+        int iconId = Utility.getIconResourceForWeatherCondition(weatherId);
+        String title = getString(R.string.app_name);
+
+        // Define the text of the forecast.
+        String contentText = String.format(getString(R.string.format_notification),
+                desc,
+                Utility.formatTemperature(this, high),
+                Utility.formatTemperature(this, low));
+
+        // NotificationCompatBuilder is a very convenient way to build backward-compatible
+        // notifications.  Just throw in some data.
+        NotificationCompat.Builder mBuilder =
+                new NotificationCompat.Builder(this)
+                        .setColor(resources.getColor(R.color.primary_light))
+                        .setSmallIcon(iconId)
+                        .setLargeIcon(largeIcon)
+                        .setContentTitle(title)
+                        .setContentText(contentText);
+
+        // Make something interesting happen when the user clicks on the notification.
+        // In this case, opening the app is sufficient.
+        Intent resultIntent = new Intent(this, MainActivity.class);
+
+        // The stack builder object will contain an artificial back stack for the
+        // started Activity.
+        // This ensures that navigating backward from the Activity leads out of
+        // your application to the Home screen.
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(this);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent resultPendingIntent =
+                stackBuilder.getPendingIntent(
+                        0,
+                        PendingIntent.FLAG_UPDATE_CURRENT
+                );
+        mBuilder.setContentIntent(resultPendingIntent);
+
+        NotificationManager mNotificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        // WEATHER_NOTIFICATION_ID allows you to update the notification later on.
+        mNotificationManager.notify(WEATHER_NOTIFICATION_ID, mBuilder.build());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Day arithmetic, both for today, which is answered from the cache, and for other days, which
+ * are computed from the time zone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DayCalendarBenchmark {
+    // Instants spread over the two weeks a forecast covers
+    private static final int INSTANTS = 64;
+
+    private final long[] mInstants = new long[INSTANTS];
+    private final int[] mDays = new int[INSTANTS];
+    private long mNow;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        mNow = System.currentTimeMillis();
+        for (int i = 0; i < INSTANTS; i++) {
+            mInstants[i] = mNow + i * 14 * DayCalendar.DAY_IN_MILLIS / INSTANTS;
+            mDays[i] = DayCalendar.toEpochDay(mInstants[i]);
+        }
+    }
+
+    private int next() {
+        mIndex = (mIndex + 1) % INSTANTS;
+        return mIndex;
+    }
+
+    @Benchmark
+    public int today() {
+        return DayCalendar.today();
+    }
+
+    @Benchmark
+    public int toEpochDayToday() {
+        return DayCalendar.toEpochDay(mNow);
+    }
+
+    @Benchmark
+    public int toEpochDay() {
+        return DayCalendar.toEpochDay(mInstants[next()]);
+    }
+
+    @Benchmark
+    public long startOfDay() {
+        return DayCalendar.startOfDay(mDays[next()]);
+    }
+
+    @Benchmark
+    public long normalize() {
+        return DayCalendar.normalize(mInstants[next()]);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of daily forecast responses the size OpenWeatherMap sends (14 days) and far bigger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OwmForecastBenchmark {
+    @Param({ "1", "14", "1000" })
+    public int days;
+
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"cod\":\"200\",\"message\":0.0032,"
+                + "\"city\":{\"id\":0,\"name\":\"Mountain View\","
+                + "\"coord\":{\"lat\":37.4,\"lon\":-122.08},\"country\":\"US\"},"
+                + "\"cnt\":" + days + ",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            double low = 10 + i % 7;
+            json.append(String.format(Locale.US,
+                    "{\"dt\":%d,\"temp\":{\"day\":%.2f,\"min\":%.2f,\"max\":%.2f,\"night\":%.2f,"
+                            + "\"eve\":%.2f,\"morn\":%.2f},\"pressure\":%.2f,\"humidity\":%d,"
+                            + "\"weather\":[{\"id\":%d,\"main\":\"%s\",\"description\":\"%s\","
+                            + "\"icon\":\"01d\"}],\"speed\":%.2f,\"deg\":%d,\"clouds\":0}",
+                    1442000000L + i * 86400L, low + 5, low, low + 10, low + 2, low + 6, low + 1,
+                    1000.0 + i % 30, 50 + i % 40,
+                    i % 2 == 0 ? 800 : 500, i % 2 == 0 ? "Clear" : "Rain",
+                    i % 2 == 0 ? "sky is clear" : "light rain",
+                    1 + i % 10 * 0.5, i * 37 % 360));
+        }
+        mJson = json.append("]}").toString();
+    }
+
+    @Benchmark
+    public OwmForecast parse() throws JSONException {
+        return OwmForecast.parse(mJson);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-row work of binding a forecast list: looking up the condition of a code and rounding
+ * temperatures for display.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WeatherConditionBenchmark {
+    // Codes that show up in forecasts, and a couple that don't
+    private static final int[] CODES = {
+            200, 211, 300, 500, 501, 511, 520, 600, 601, 701, 741, 781, 800, 801, 802, 804, 906, 0
+    };
+
+    private int mIndex;
+    private double mTemperature = -30.25;
+
+    @Benchmark
+    public int conditionOf() {
+        mIndex = (mIndex + 1) % CODES.length;
+        return WeatherCondition.of(CODES[mIndex]);
+    }
+
+    @Benchmark
+    public int roundDegrees() {
+        mTemperature = mTemperature > 45 ? -30.25 : mTemperature + 0.7;
+        return Temperatures.roundDegrees(Temperatures.toDisplayUnits(mTemperature, false));
+    }
+}
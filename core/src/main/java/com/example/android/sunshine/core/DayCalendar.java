@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.TimeZone;
+
+/**
+ * Day arithmetic in the device's time zone, expressed in epoch days (days since 1970-01-01 in
+ * local time).
+ *
+ * The current day's boundaries and the time zone are cached, so the common questions ("which day
+ * is this?", "is it today?") are answered without allocating or recomputing offsets.  The cache
+ * rolls over by itself at midnight, and {@link #invalidate()} drops it when the time zone or the
+ * clock is changed.  Offsets are always taken at the instant being converted, so days are
+ * correct on either side of a daylight savings transition.
+ */
+public final class DayCalendar {
+    public static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private static volatile Today sToday;
+
+    /**
+     * The current day and the time zone it was computed in.
+     */
+    private static final class Today {
+        final TimeZone timeZone;
+        final int epochDay;
+        final long start;
+        final long end;
+
+        Today(TimeZone timeZone, long now) {
+            this.timeZone = timeZone;
+            epochDay = toEpochDay(timeZone, now);
+            start = startOfDay(timeZone, epochDay);
+            end = startOfDay(timeZone, epochDay + 1);
+        }
+    }
+
+    private static Today today(long now) {
+        Today today = sToday;
+        if (today == null || now < today.start || now >= today.end) {
+            TimeZone timeZone = today == null ? TimeZone.getDefault() : today.timeZone;
+            today = new Today(timeZone, now);
+            sToday = today;
+        }
+        return today;
+    }
+
+    /**
+     * Forgets the cached day and time zone, so that they are recomputed on next use.  Called
+     * when the time zone or the clock changes.
+     */
+    public static void invalidate() {
+        sToday = null;
+    }
+
+    /**
+     * @return the time zone days are computed in
+     */
+    public static TimeZone getTimeZone() {
+        return today(System.currentTimeMillis()).timeZone;
+    }
+
+    /**
+     * @return today, as an epoch day in local time
+     */
+    public static int today() {
+        return today(System.currentTimeMillis()).epochDay;
+    }
+
+    /**
+     * @param millis An instant, in milliseconds since the epoch
+     * @return the local epoch day containing that instant
+     */
+    public static int toEpochDay(long millis) {
+        Today today = today(System.currentTimeMillis());
+        if (millis >= today.start && millis < today.end) {
+            return today.epochDay;
+        }
+        return toEpochDay(today.timeZone, millis);
+    }
+
+    /**
+     * @param epochDay A local epoch day
+     * @return the instant of local midnight at the start of that day
+     */
+    public static long startOfDay(int epochDay) {
+        Today today = today(System.currentTimeMillis());
+        if (epochDay == today.epochDay) {
+            return today.start;
+        }
+        return startOfDay(today.timeZone, epochDay);
+    }
+
+    /**
+     * @param millis An instant, in milliseconds since the epoch
+     * @return the instant of local midnight at the start of the day containing it
+     */
+    public static long normalize(long millis) {
+        return startOfDay(toEpochDay(millis));
+    }
+
+    private static int toEpochDay(TimeZone timeZone, long millis) {
+        long localMillis = millis + timeZone.getOffset(millis);
+        // Floor rather than truncate, so that instants before the epoch land on the right day
+        long day = localMillis / DAY_IN_MILLIS;
+        if (localMillis % DAY_IN_MILLIS < 0) {
+            day--;
+        }
+        return (int) day;
+    }
+
+    private static long startOfDay(TimeZone timeZone, int epochDay) {
+        long localMidnight = epochDay * DAY_IN_MILLIS;
+        // Guess with the offset at UTC midnight, then correct with the offset in effect at the
+        // guessed instant, in case a transition falls between the two.
+        long guess = localMidnight - timeZone.getOffset(localMidnight);
+        return localMidnight - timeZone.getOffset(guess);
+    }
+
+    private DayCalendar() {
+    }
+}
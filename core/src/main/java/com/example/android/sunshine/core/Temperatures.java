@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+/**
+ * Temperature arithmetic shared by the phone and the watch, which both store and send Celsius.
+ */
+public final class Temperatures {
+
+    /**
+     * @param celsius A temperature in Celsius
+     * @param metric Whether the user prefers metric units
+     * @return the temperature in the user's units
+     */
+    public static double toDisplayUnits(double celsius, boolean metric) {
+        return metric ? celsius : (celsius * 1.8) + 32;
+    }
+
+    /**
+     * Rounds a temperature to a whole degree the same way a "%.0f" format does: half away from
+     * zero, going by the exact value of the double.  The fraction is compared as it is, rather
+     * than adding 0.5, which rounds values just below a half up.
+     *
+     * A result of 0 may come from a negative temperature, which "%.0f" formats as "-0"; see
+     * {@link #isNegative(double)}.
+     */
+    public static int roundDegrees(double temperature) {
+        double magnitude = Math.abs(temperature);
+        double whole = Math.floor(magnitude);
+        // Exact: both are doubles of the same sign, and whole is at most magnitude
+        if (magnitude - whole >= 0.5) {
+            whole++;
+        }
+        return (int) (temperature < 0 ? -whole : whole);
+    }
+
+    /**
+     * @return whether a temperature has its sign bit set, so that "%.0f" formats it with a minus
+     * sign even when it rounds to 0 (including -0.0 itself)
+     */
+    public static boolean isNegative(double temperature) {
+        return Double.doubleToRawLongBits(temperature) < 0;
+    }
+
+    private Temperatures() {
+    }
+}
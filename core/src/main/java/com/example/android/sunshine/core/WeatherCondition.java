@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.core;
+
+import java.util.Arrays;
+
+/**
+ * Groups OpenWeatherMap condition codes into the handful of conditions that have their own icon
+ * and artwork.
+ *
+ * Codes are looked up in a dense table, from {@link #FIRST_CODE} to {@link #LAST_CODE}, so a
+ * lookup is an array access.  The app and the watch face map conditions to their own resources.
+ */
+public final class WeatherCondition {
+    public static final int UNKNOWN = -1;
+    public static final int STORM = 0;
+    public static final int LIGHT_RAIN = 1;
+    public static final int RAIN = 2;
+    public static final int SNOW = 3;
+    public static final int FOG = 4;
+    public static final int CLEAR = 5;
+    public static final int LIGHT_CLOUDS = 6;
+    public static final int CLOUDS = 7;
+    public static final int COUNT = 8;
+
+    // Names used to build art urls, indexed by condition
+    private static final String[] NAMES = {
+            "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+
+    public static final int FIRST_CODE = 200;
+    public static final int LAST_CODE = 962;
+
+    private static final byte[] CONDITIONS = new byte[LAST_CODE - FIRST_CODE + 1];
+
+    static {
+        Arrays.fill(CONDITIONS, (byte) UNKNOWN);
+
+        // Based on weather code data found at:
+        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+        put(200, 232, STORM);
+        put(300, 321, LIGHT_RAIN);
+        put(500, 504, RAIN);
+        put(511, 511, SNOW);
+        put(520, 531, RAIN);
+        put(600, 622, SNOW);
+        put(701, 761, FOG);
+        put(781, 781, STORM);
+        put(800, 800, CLEAR);
+        put(801, 801, LIGHT_CLOUDS);
+        put(802, 804, CLOUDS);
+    }
+
+    private static void put(int firstCode, int lastCode, int condition) {
+        for (int code = firstCode; code <= lastCode; code++) {
+            CONDITIONS[code - FIRST_CODE] = (byte) condition;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return the condition the code belongs to, or {@link #UNKNOWN} if it has none
+     */
+    public static int of(int weatherId) {
+        return weatherId < FIRST_CODE || weatherId > LAST_CODE
+                ? UNKNOWN : CONDITIONS[weatherId - FIRST_CODE];
+    }
+
+    /**
+     * @param condition One of the conditions other than {@link #UNKNOWN}
+     * @return the name of the condition, e.g "light_rain"
+     */
+    public static String getName(int condition) {
+        return NAMES[condition];
+    }
+
+    private WeatherCondition() {
+    }
+}
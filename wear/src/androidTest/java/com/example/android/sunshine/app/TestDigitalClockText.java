@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/*
+    Checks that the watch face's clock text matches what String.format used to produce, and that
+    updating and drawing it once a frame doesn't allocate.
+ */
+public class TestDigitalClockText extends AndroidTestCase {
+
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+    private static final int FRAMES = 1000;
+
+    public void testMatchesFormat() {
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+        Calendar calendar = Calendar.getInstance(utc);
+        DigitalClockText clockText = new DigitalClockText();
+
+        // Every minute of two days, either side of the epoch
+        for (long millis = -24 * 60 * MINUTE_IN_MILLIS; millis < 24 * 60 * MINUTE_IN_MILLIS;
+             millis += MINUTE_IN_MILLIS) {
+            calendar.setTimeInMillis(millis);
+            String expected = String.format("%d:%02d", calendar.get(Calendar.HOUR),
+                    calendar.get(Calendar.MINUTE));
+            clockText.setTime(millis);
+            assertEquals("Error: Wrong clock text at " + millis, expected, clockText.toString());
+        }
+    }
+
+    public void testUnchangedWithinMinute() {
+        DigitalClockText clockText = new DigitalClockText();
+        assertTrue(clockText.setTime(5 * MINUTE_IN_MILLIS));
+        assertFalse(clockText.setTime(5 * MINUTE_IN_MILLIS + 59 * 1000));
+        assertTrue(clockText.setTime(6 * MINUTE_IN_MILLIS));
+    }
+
+    public void testNoAllocationsPerFrame() {
+        DigitalClockText clockText = new DigitalClockText();
+        Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        TimeZone timeZone = TimeZone.getDefault();
+
+        // Warm up, so that lazily initialized state isn't counted
+        long now = System.currentTimeMillis();
+        clockText.setTime(now + timeZone.getOffset(now));
+        clockText.draw(canvas, 32, 32, paint);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < FRAMES; i++) {
+            long millis = now + i * MINUTE_IN_MILLIS;
+            clockText.setTime(millis + timeZone.getOffset(millis));
+            clockText.draw(canvas, 32, 32, paint);
+        }
+        Debug.stopAllocCounting();
+        int allocations = Debug.getThreadAllocCount();
+        bitmap.recycle();
+
+        assertEquals("Error: Drawing the clock allocated " + allocations + " objects over "
+                + FRAMES + " frames", 0, allocations);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+
+import java.util.TimeZone;
+
+/*
+    Checks that drawing whole watch face frames, as SunshineWatchFace.onDraw does, doesn't
+    allocate: the clock, the date, the cached weather layer and, when it is invalidated, redrawing
+    that layer.
+ */
+public class TestWatchFaceRenderer extends AndroidTestCase {
+
+    private static final long DAY_IN_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int FRAMES = 1000;
+    // Redraw the weather layer this often, as a change of weather or mode would
+    private static final int FRAMES_PER_LAYER = 100;
+
+    private Bitmap mScreen;
+    private Bitmap mIcon;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mScreen = Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888);
+        mIcon = Bitmap.createBitmap(40, 40, Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mScreen.recycle();
+        mIcon.recycle();
+        super.tearDown();
+    }
+
+    private WatchFaceRenderer newRenderer() {
+        WatchFaceRenderer renderer = new WatchFaceRenderer(getContext().getResources());
+        renderer.loadTextSizes(getContext().getResources());
+        renderer.setRenderState(new WeatherRenderState(800, "25\u00B0", "16\u00B0",
+                mIcon, mIcon, mIcon));
+        return renderer;
+    }
+
+    /**
+     * @return noon today, so that a run of frames a second apart stays within the day
+     */
+    private static long noonToday() {
+        long now = System.currentTimeMillis();
+        int offset = TimeZone.getDefault().getOffset(now);
+        long localMidnight = (now + offset) / DAY_IN_MILLIS * DAY_IN_MILLIS;
+        return localMidnight + DAY_IN_MILLIS / 2 - offset;
+    }
+
+    private int countFrameAllocations(WatchFaceRenderer renderer) {
+        Canvas canvas = new Canvas(mScreen);
+        long start = noonToday();
+
+        // Warm up, so that the layer, the date text and lazily initialized state aren't counted
+        renderer.draw(canvas, start);
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < FRAMES; i++) {
+            if (i % FRAMES_PER_LAYER == 0) {
+                renderer.invalidateWeatherLayer();
+            }
+            renderer.draw(canvas, start + i * 1000);
+        }
+        Debug.stopAllocCounting();
+        return Debug.getThreadAllocCount();
+    }
+
+    public void testNoAllocationsPerFrame() {
+        WatchFaceRenderer renderer = newRenderer();
+        int allocations = countFrameAllocations(renderer);
+        renderer.release();
+
+        assertEquals("Error: Drawing interactive frames allocated " + allocations
+                + " objects over " + FRAMES + " frames", 0, allocations);
+    }
+
+    public void testNoAllocationsPerAmbientFrame() {
+        WatchFaceRenderer renderer = newRenderer();
+        renderer.setLowBitAmbient(true);
+        renderer.setAmbient(true);
+        int allocations = countFrameAllocations(renderer);
+        renderer.release();
+
+        assertEquals("Error: Drawing ambient frames allocated " + allocations
+                + " objects over " + FRAMES + " frames", 0, allocations);
+    }
+}
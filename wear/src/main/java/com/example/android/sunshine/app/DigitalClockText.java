@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * The time of day as "h:mm" on a 12 hour clock, kept in a reused char buffer so that updating
+ * and drawing it doesn't allocate.  Hours run from 0 to 11, like {@link java.util.Calendar#HOUR}.
+ */
+public class DigitalClockText {
+    private static final long MINUTE_IN_MILLIS = 60 * 1000;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    // Long enough for "11:59"
+    private final char[] mChars = new char[5];
+    private int mLength;
+    private int mMinuteOfDay = -1;
+
+    /**
+     * @param localMillis Wall clock time in the local time zone, i.e. milliseconds since the
+     *                    epoch plus the zone's offset at that instant
+     * @return true if the text changed
+     */
+    public boolean setTime(long localMillis) {
+        long minutes = localMillis / MINUTE_IN_MILLIS;
+        // Floor rather than truncate, so that times before the epoch land on the right minute
+        if (localMillis % MINUTE_IN_MILLIS < 0) {
+            minutes--;
+        }
+        int minuteOfDay = (int) (minutes % MINUTES_PER_DAY);
+        if (minuteOfDay < 0) {
+            minuteOfDay += MINUTES_PER_DAY;
+        }
+        if (minuteOfDay == mMinuteOfDay) {
+            return false;
+        }
+        mMinuteOfDay = minuteOfDay;
+
+        int hour = (minuteOfDay / 60) % 12;
+        int minute = minuteOfDay % 60;
+        int i = 0;
+        if (hour >= 10) {
+            mChars[i++] = (char) ('0' + hour / 10);
+        }
+        mChars[i++] = (char) ('0' + hour % 10);
+        mChars[i++] = ':';
+        mChars[i++] = (char) ('0' + minute / 10);
+        mChars[i++] = (char) ('0' + minute % 10);
+        mLength = i;
+        return true;
+    }
+
+    public void draw(Canvas canvas, float x, float y, Paint paint) {
+        canvas.drawText(mChars, 0, mLength, x, y, paint);
+    }
+
+    @Override
+    public String toString() {
+        return new String(mChars, 0, mLength);
+    }
+}
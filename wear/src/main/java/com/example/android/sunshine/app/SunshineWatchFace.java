@@ -20,20 +20,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Resources;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
-import android.preference.PreferenceManager;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
@@ -42,20 +36,19 @@ import android.view.WindowInsets;
 
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.data.FreezableUtils;
 import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.PutDataRequest;
 import com.google.android.gms.wearable.Wearable;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.ref.WeakReference;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -65,9 +58,6 @@ import java.util.concurrent.TimeUnit;
 public class SunshineWatchFace extends CanvasWatchFaceService {
     private static final String TAG = SunshineWatchFace.class.getSimpleName();
 
-    private static final Typeface NORMAL_TYPEFACE =
-            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
-
     /**
      * Update rate in milliseconds for interactive mode. We update once a second since seconds are
      * displayed in interactive mode.
@@ -79,9 +69,59 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
      */
     private static final int MSG_UPDATE_TIME = 0;
 
-    private static final String KEY_ICON = "icon";
-    private static final String KEY_HIGH = "high";
-    private static final String KEY_LOW = "low";
+    // Debug broadcast controlling WatchFaceMetrics, e.g.
+    // adb shell am broadcast -a com.example.android.sunshine.app.action.WATCH_FACE_METRICS \
+    //     --es command enable
+    // Commands are enable, disable, reset and dump (to logcat).  Only the shell may send it.
+    private static final String ACTION_METRICS =
+            "com.example.android.sunshine.app.action.WATCH_FACE_METRICS";
+    private static final String EXTRA_COMMAND = "command";
+
+    private final BroadcastReceiver mMetricsReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            WatchFaceMetrics metrics = WatchFaceMetrics.getInstance();
+            String command = intent.getStringExtra(EXTRA_COMMAND);
+            if ("enable".equals(command)) {
+                metrics.setEnabled(true);
+            } else if ("disable".equals(command)) {
+                metrics.setEnabled(false);
+            } else if ("reset".equals(command)) {
+                metrics.reset();
+            } else if ("dump".equals(command)) {
+                StringWriter out = new StringWriter();
+                metrics.dump(new PrintWriter(out));
+                Log.i(TAG, out.toString());
+            } else {
+                Log.w(TAG, "Unknown metrics command " + command);
+            }
+        }
+    };
+    private boolean mMetricsReceiverRegistered;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            registerReceiver(mMetricsReceiver, new IntentFilter(ACTION_METRICS),
+                    android.Manifest.permission.DUMP, null);
+            mMetricsReceiverRegistered = true;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mMetricsReceiverRegistered) {
+            unregisterReceiver(mMetricsReceiver);
+            mMetricsReceiverRegistered = false;
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        WatchFaceMetrics.getInstance().dump(writer);
+    }
 
     @Override
     public Engine onCreateEngine() {
@@ -109,47 +149,27 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
     }
 
     private class Engine extends CanvasWatchFaceService.Engine implements ConnectionCallbacks,
-            DataApi.DataListener {
-        static final String WEATHER_PATH = "/weather";
+            DataApi.DataListener, WeatherStateStore.Listener, WeatherDecoder.Callback {
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
-        Paint mIconPaint;
-        Paint mBackgroundPaint;
-        Paint mTextPaint;
-        Paint mDatePaint;
-        Paint mStrokePaint;
-        Paint mHighPaint;
-        Paint mLowPaint;
-        ColorMatrixColorFilter mGreyscaleFilter;
-        boolean mAmbient;
-        Calendar mCalendar;
-        Date mDate;
-        SimpleDateFormat mDateFormat;
+        WatchFaceRenderer mRenderer;
         GoogleApiClient mGoogleApiClient;
 
-        Bitmap mScaledIcon;
-        int mWeatherId;
-        String mHigh;
-        String mLow;
+        // The forecast received so far
+        WeatherStateStore mStore;
+        // Epoch day the render state was last asked for
+        int mShownDay = Integer.MIN_VALUE;
+        // Decodes data and builds render states in the background
+        WeatherDecoder mDecoder;
 
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.updateTimeZone();
+                mShownDay = Integer.MIN_VALUE;
                 invalidate();
             }
         };
-        float mYOffset;
-        float mLineHeight;
-
-        int mBlack, mBlue;
-
-        /**
-         * Whether the display supports fewer bits for each color in ambient mode. When true, we
-         * disable anti-aliasing in ambient mode.
-         */
-        boolean mLowBitAmbient;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -160,53 +180,43 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                     .setBackgroundVisibility(WatchFaceStyle.BACKGROUND_VISIBILITY_INTERRUPTIVE)
                     .setShowSystemUiTime(false)
                     .build());
-            Resources resources = SunshineWatchFace.this.getResources();
-            int white = resources.getColor(R.color.white);
-            int whiteFade = resources.getColor(R.color.white_fade);
-
-            mYOffset = resources.getDimension(R.dimen.digital_y_offset);
-
-            mBlack = resources.getColor(R.color.black);
-            mBlue = resources.getColor(R.color.blue_500);
-            mLineHeight = resources.getDimension(R.dimen.digital_line_height);
-
-            mIconPaint = new Paint();
-            mIconPaint.setAntiAlias(true);
-
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(mBlue);
-
-            mTextPaint = createTextPaint(white);
-            mDatePaint = createTextPaint(whiteFade);
-            mHighPaint = createTextPaint(white);
-            mLowPaint = createTextPaint(whiteFade);
-
-            mStrokePaint = new Paint();
-            mStrokePaint.setColor(whiteFade);
-            mStrokePaint.setStrokeWidth(1);
-
-            ColorMatrix cm = new ColorMatrix();
-            cm.setSaturation(0);
-            mGreyscaleFilter = new ColorMatrixColorFilter(cm);
-
-            mCalendar = Calendar.getInstance();
-            mDate = new Date();
-            initFormats();
+            mRenderer = new WatchFaceRenderer(SunshineWatchFace.this.getResources());
 
             mGoogleApiClient = new GoogleApiClient.Builder(SunshineWatchFace.this)
                     .addApi(Wearable.API)
                     .addConnectionCallbacks(this)
                     .build();
 
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(SunshineWatchFace.this);
-            setIcon(prefs.getInt(KEY_ICON, 800));
-            mHigh = prefs.getString(KEY_HIGH, "--\u00B0");
-            mLow = prefs.getString(KEY_LOW, "--\u00B0");
+            // Shows blanks until the saved forecast has been read
+            mDecoder = new WeatherDecoder(SunshineWatchFace.this, this);
+            mStore = new WeatherStateStore(SunshineWatchFace.this, this);
+            mStore.load();
+            showDay(mRenderer.getEpochDay(System.currentTimeMillis()));
+        }
+
+        /**
+         * Has the forecast for the given epoch day built, to be shown once it is ready, and
+         * forgets the days before it.
+         */
+        private void showDay(int day) {
+            mShownDay = day;
+            mStore.removeDaysBefore(day);
+            mDecoder.render(mStore.getDay(day), mStore.isMetric());
+        }
+
+        @Override
+        public void onRenderStateReady(WeatherRenderState state) {
+            mRenderer.setRenderState(state);
+            Log.i(TAG, state.weatherId + " " + state.high + " " + state.low);
+            invalidate();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mRenderer.release();
+            mDecoder.close();
+            mStore.close();
             super.onDestroy();
         }
 
@@ -214,6 +224,26 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         public void onConnected(Bundle bundle) {
             Log.i(TAG, "onConnected");
             Wearable.DataApi.addListener(mGoogleApiClient, this);
+
+            // Catch up on anything the phone sent while we weren't listening
+            Uri weatherUri = new Uri.Builder()
+                    .scheme(PutDataRequest.WEAR_URI_SCHEME)
+                    .path(WeatherDecoder.WEATHER_PATH)
+                    .build();
+            Wearable.DataApi.getDataItems(mGoogleApiClient, weatherUri, DataApi.FILTER_PREFIX)
+                    .setResultCallback(new ResultCallback<DataItemBuffer>() {
+                        @Override
+                        public void onResult(DataItemBuffer dataItems) {
+                            try {
+                                if (dataItems.getStatus().isSuccess()) {
+                                    mDecoder.decodeItems(
+                                            FreezableUtils.freezeIterable(dataItems));
+                                }
+                            } finally {
+                                dataItems.release();
+                            }
+                        }
+                    });
         }
 
         @Override
@@ -225,40 +255,33 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         @Override
         public void onDataChanged(DataEventBuffer dataEventBuffer) {
             Log.i(TAG, "onDataChanged");
-            //Only interested in last weather event
-            for(int i = dataEventBuffer.getCount() - 1; i >= 0; i--){
-                DataEvent event = dataEventBuffer.get(i);
-                if(event.getType() == DataEvent.TYPE_CHANGED
-                        && WEATHER_PATH.equals(event.getDataItem().getUri().getPath())){
-                    Log.i(TAG, new String(event.getDataItem().getData()));
-                    try {
-                        JSONObject json = new JSONObject(new String(event.getDataItem().getData()));
-                        setIcon(json.getInt(KEY_ICON));
-                        mHigh = json.getString(KEY_HIGH);
-                        mLow = json.getString(KEY_LOW);
-
-                        //Save to shared preferences
-                        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(SunshineWatchFace.this);
-                        SharedPreferences.Editor editor = prefs.edit();
-                        editor.putInt(KEY_ICON, mWeatherId);
-                        editor.putString(KEY_HIGH, mHigh);
-                        editor.putString(KEY_LOW, mLow);
-                        Log.i(TAG, mWeatherId + " " + mHigh + " " + mLow);
-                    } catch (JSONException e) {
-                        Log.e("Watch Face Engine", e.getMessage());
-                    }
-                    break;
+            WatchFaceMetrics.getInstance().recordDataEvents(dataEventBuffer.getCount());
+            // The buffer is released when this returns, so hand the decoder a copy
+            mDecoder.decodeEvents(FreezableUtils.freezeIterable(dataEventBuffer));
+        }
+
+        @Override
+        public void onUpdatesDecoded(List<WeatherDecoder.Update> updates) {
+            for (WeatherDecoder.Update update : updates) {
+                switch (update.kind) {
+                    case WeatherDecoder.Update.HEADER:
+                        mStore.setMetric(update.metric);
+                        break;
+                    case WeatherDecoder.Update.DAY:
+                        mStore.putDay(update.epochDay, update.forecast);
+                        break;
+                    case WeatherDecoder.Update.DELETED:
+                        mStore.removeDay(update.epochDay);
+                        break;
                 }
             }
+            // Only redraws if the updates actually changed the forecast
+            mStore.apply();
         }
 
-        private Paint createTextPaint(int textColor) {
-            Paint paint = new Paint();
-            paint.setColor(textColor);
-            paint.setTypeface(NORMAL_TYPEFACE);
-            paint.setTextAlign(Paint.Align.CENTER);
-            paint.setAntiAlias(true);
-            return paint;
+        @Override
+        public void onWeatherStateChanged() {
+            showDay(mRenderer.getEpochDay(System.currentTimeMillis()));
         }
 
         @Override
@@ -270,8 +293,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                initFormats();
+                mRenderer.updateTimeZone();
             } else {
                 if(mGoogleApiClient.isConnected() || mGoogleApiClient.isConnecting()){
                     mGoogleApiClient.disconnect();
@@ -307,21 +329,18 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
             // Load resources that have alternate values for round watches.
             Resources resources = SunshineWatchFace.this.getResources();
-            boolean isRound = insets.isRound();
-            float textSize = resources.getDimension(R.dimen.digital_text_size);
-            float dateSize = resources.getDimension(R.dimen.digital_date_size);
-            float temperatureSize = resources.getDimension(R.dimen.digital_temperature_size);
-
-            mTextPaint.setTextSize(textSize);
-            mDatePaint.setTextSize(dateSize);
-            mHighPaint.setTextSize(temperatureSize);
-            mLowPaint.setTextSize(temperatureSize);
+            mRenderer.loadTextSizes(resources);
+            mDecoder.setIconSize(resources.getDimensionPixelSize(R.dimen.digital_icon_size));
+            // Rebuild the render state with icons of the new size
+            if (mShownDay != Integer.MIN_VALUE) {
+                showDay(mShownDay);
+            }
         }
 
         @Override
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
-            mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            mRenderer.setLowBitAmbient(properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false));
         }
 
         @Override
@@ -333,18 +352,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
         @Override
         public void onAmbientModeChanged(boolean inAmbientMode) {
             super.onAmbientModeChanged(inAmbientMode);
-            if (mAmbient != inAmbientMode) {
-                mAmbient = inAmbientMode;
-
-                adjustPaintColorToCurrentMode(mBackgroundPaint, mBlue, mBlack);
-
-                mIconPaint.setColorFilter(inAmbientMode ? mGreyscaleFilter : null);
-
-                if (mLowBitAmbient) {
-                    mIconPaint.setAntiAlias(!inAmbientMode);
-                    mTextPaint.setAntiAlias(!inAmbientMode);
-                    mDatePaint.setAntiAlias(!inAmbientMode);
-                }
+            if (mRenderer.isAmbient() != inAmbientMode) {
+                mRenderer.setAmbient(inAmbientMode);
                 invalidate();
             }
 
@@ -355,40 +364,13 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Draw the background.
-            canvas.drawColor(mBackgroundPaint.getColor());
-
             long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
-            mDate.setTime(now);
-
-            int half = canvas.getWidth()/2;
-
-            String text = String.format("%d:%02d", mCalendar.get(Calendar.HOUR),
-                    mCalendar.get(Calendar.MINUTE));
-            canvas.drawText(text, half, mYOffset, mTextPaint);
-
-            canvas.drawText(mDateFormat.format(mDate).toUpperCase(),
-                    half, mYOffset + mLineHeight, mDatePaint);
-
-            canvas.drawLine(half - mLineHeight, mYOffset + 2 * mLineHeight,
-                    half + mLineHeight, mYOffset + 2 * mLineHeight, mStrokePaint);
-
-            canvas.drawBitmap(mScaledIcon, half - 3 * mLineHeight, mYOffset + 4 * mLineHeight - mScaledIcon.getHeight(), mIconPaint);
-
-            canvas.drawText(mHigh, half, mYOffset + 3 * mLineHeight + mHighPaint.getTextSize()/2, mHighPaint);
-
-            canvas.drawText(mLow, half + 2 * mLineHeight, mYOffset + 3 * mLineHeight + mLowPaint.getTextSize()/2, mLowPaint);
-        }
-
-        private void adjustPaintColorToCurrentMode(Paint paint, int interactiveColor,
-                                                   int ambientColor) {
-            paint.setColor(isInAmbientMode() ? ambientColor : interactiveColor);
-        }
-
-        private void initFormats() {
-            mDateFormat = new SimpleDateFormat(getResources().getString(R.string.date_format), Locale.getDefault());
-            mDateFormat.setCalendar(mCalendar);
+            // Move on to the next day's forecast at midnight, without waiting for the phone
+            int day = mRenderer.getEpochDay(now);
+            if (day != mShownDay) {
+                showDay(day);
+            }
+            mRenderer.draw(canvas, now);
         }
 
         /**
@@ -414,6 +396,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
          * Handle updating the time periodically in interactive mode.
          */
         private void handleUpdateTimeMessage() {
+            WatchFaceMetrics.getInstance().recordTimerTick();
             invalidate();
             if (shouldTimerBeRunning()) {
                 long timeMs = System.currentTimeMillis();
@@ -422,15 +405,5 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
             }
         }
-
-        private void setIcon(int resId){
-            if(mWeatherId != resId) {
-                Bitmap bitmap = BitmapFactory.decodeResource(getResources(), Utility.getIconResourceForWeatherCondition(resId));
-                if(bitmap != null){
-                    mScaledIcon = bitmap;
-                    mWeatherId = resId;
-                }
-            }
-        }
     }
 }
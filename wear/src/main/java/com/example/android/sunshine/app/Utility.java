@@ -1,6 +1,23 @@
 package com.example.android.sunshine.app;
 
+import android.content.Context;
+
+import com.example.android.sunshine.core.Temperatures;
+import com.example.android.sunshine.core.WeatherCondition;
+
 public class Utility {
+    /**
+     * Formats a temperature received from the phone, which always sends Celsius.
+     * @param context Context used to get the temperature format
+     * @param temperature in Celsius
+     * @param metric whether the user prefers metric units on the phone
+     * @return the temperature in the user's units, e.g "21°"
+     */
+    public static String formatTemperature(Context context, double temperature, boolean metric) {
+        return String.format(context.getString(R.string.format_temperature),
+                Temperatures.toDisplayUnits(temperature, metric));
+    }
+
     /**
      * Helper method to provide the icon resource id according to the weather condition id returned
      * by the OpenWeatherMap call.
@@ -8,33 +25,15 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
-        }
-        return -1;
+        int condition = WeatherCondition.of(weatherId);
+        return condition == WeatherCondition.UNKNOWN ? -1 : CONDITION_ICONS[condition];
     }
 
+    // Icons, indexed by WeatherCondition
+    private static final int[] CONDITION_ICONS = {
+            R.drawable.ic_storm, R.drawable.ic_light_rain, R.drawable.ic_rain, R.drawable.ic_snow,
+            R.drawable.ic_fog, R.drawable.ic_clear, R.drawable.ic_light_clouds, R.drawable.ic_cloudy
+    };
+
     private Utility(){}
 }
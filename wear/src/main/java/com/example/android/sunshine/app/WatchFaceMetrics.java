@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-in counters and timings for the watch face, to tune it for battery.
+ *
+ * Off by default, in which case recording costs a volatile read.  When on, it keeps a histogram
+ * of frame times per display mode, counts of redraws, timer ticks and data layer events, and the
+ * last {@link #EVENT_CAPACITY} timed events.  Everything is recorded with atomics rather than
+ * locks, so recording never blocks a frame; a dump taken while events are being recorded may be
+ * off by the events in flight.
+ *
+ * Turned on and off, and dumped to logcat, with a debug broadcast (see
+ * {@link SunshineWatchFace}), and dumped with
+ * {@code adb shell dumpsys activity service com.example.android.sunshine.app/.SunshineWatchFace}.
+ */
+public final class WatchFaceMetrics {
+    public static final int MODE_INTERACTIVE = 0;
+    public static final int MODE_AMBIENT = 1;
+    private static final int MODES = 2;
+    private static final String[] MODE_NAMES = {"interactive", "ambient"};
+
+    // Kinds of timed events
+    public static final int EVENT_FRAME = 0;
+    public static final int EVENT_LAYER = 1;
+    public static final int EVENT_DECODE = 2;
+    private static final String[] EVENT_NAMES = {"frame", "layer", "decode"};
+
+    // Frame times are bucketed by powers of two of microseconds: bucket n holds times below 2^n
+    // microseconds, and the last one everything slower.
+    private static final int BUCKETS = 20;
+
+    // Must be a power of two
+    static final int EVENT_CAPACITY = 256;
+    private static final int EVENT_MASK = EVENT_CAPACITY - 1;
+    // An event packs its kind into the top byte and its duration into the rest
+    private static final int KIND_SHIFT = 56;
+    private static final long DURATION_MASK = (1L << KIND_SHIFT) - 1;
+
+    private static final WatchFaceMetrics sInstance = new WatchFaceMetrics();
+
+    private volatile boolean mEnabled;
+
+    private final AtomicLongArray mFrameBuckets = new AtomicLongArray(MODES * BUCKETS);
+    private final AtomicLongArray mFrameNanos = new AtomicLongArray(MODES);
+    private final AtomicLongArray mFrames = new AtomicLongArray(MODES);
+    private final AtomicLong mTimerTicks = new AtomicLong();
+    private final AtomicLong mDataEvents = new AtomicLong();
+    private final AtomicLong mLayerRedraws = new AtomicLong();
+    private final AtomicLong mDecodes = new AtomicLong();
+    private final AtomicLong mDecodeNanos = new AtomicLong();
+
+    // Ring buffer of timed events; mNextEvent counts every event ever recorded
+    private final AtomicLong mNextEvent = new AtomicLong();
+    private final AtomicLongArray mEvents = new AtomicLongArray(EVENT_CAPACITY);
+    private final AtomicLongArray mEventTimes = new AtomicLongArray(EVENT_CAPACITY);
+
+    public static WatchFaceMetrics getInstance() {
+        return sInstance;
+    }
+
+    private WatchFaceMetrics() {
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * @return a start time to pass to one of the record methods, or 0 when disabled
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    public void recordFrame(int mode, long start) {
+        if (start == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        mFrames.incrementAndGet(mode);
+        mFrameNanos.addAndGet(mode, nanos);
+        mFrameBuckets.incrementAndGet(mode * BUCKETS + bucketOf(nanos));
+        addEvent(EVENT_FRAME, nanos);
+    }
+
+    public void recordLayer(long start) {
+        if (start == 0) {
+            return;
+        }
+        mLayerRedraws.incrementAndGet();
+        addEvent(EVENT_LAYER, System.nanoTime() - start);
+    }
+
+    public void recordDecode(long start) {
+        if (start == 0) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        mDecodes.incrementAndGet();
+        mDecodeNanos.addAndGet(nanos);
+        addEvent(EVENT_DECODE, nanos);
+    }
+
+    public void recordTimerTick() {
+        if (mEnabled) {
+            mTimerTicks.incrementAndGet();
+        }
+    }
+
+    public void recordDataEvents(int count) {
+        if (mEnabled) {
+            mDataEvents.addAndGet(count);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < mFrameBuckets.length(); i++) {
+            mFrameBuckets.set(i, 0);
+        }
+        for (int mode = 0; mode < MODES; mode++) {
+            mFrames.set(mode, 0);
+            mFrameNanos.set(mode, 0);
+        }
+        mTimerTicks.set(0);
+        mDataEvents.set(0);
+        mLayerRedraws.set(0);
+        mDecodes.set(0);
+        mDecodeNanos.set(0);
+        mNextEvent.set(0);
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Watch face metrics (" + (mEnabled ? "enabled" : "disabled") + ")");
+        writer.println("  timer ticks: " + mTimerTicks.get());
+        writer.println("  data events: " + mDataEvents.get());
+        writer.println("  layer redraws: " + mLayerRedraws.get());
+        long decodes = mDecodes.get();
+        writer.println("  icon decodes: " + decodes + ", mean "
+                + (decodes > 0 ? mDecodeNanos.get() / decodes / 1000 : 0) + "us");
+
+        for (int mode = 0; mode < MODES; mode++) {
+            long frames = mFrames.get(mode);
+            writer.println("  " + MODE_NAMES[mode] + " frames: " + frames + ", mean "
+                    + (frames > 0 ? mFrameNanos.get(mode) / frames / 1000 : 0) + "us");
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long count = mFrameBuckets.get(mode * BUCKETS + bucket);
+                if (count > 0) {
+                    writer.println("    " + (bucket < BUCKETS - 1
+                            ? "< " + (1 << bucket) + "us: "
+                            : ">= " + (1 << (bucket - 1)) + "us: ") + count);
+                }
+            }
+        }
+
+        long next = mNextEvent.get();
+        long first = Math.max(0, next - EVENT_CAPACITY);
+        long now = SystemClock.elapsedRealtime();
+        writer.println("  last " + (next - first) + " events:");
+        for (long i = first; i < next; i++) {
+            int slot = (int) (i & EVENT_MASK);
+            long event = mEvents.get(slot);
+            writer.println("    -" + (now - mEventTimes.get(slot)) + "ms "
+                    + EVENT_NAMES[(int) (event >>> KIND_SHIFT)] + " "
+                    + (event & DURATION_MASK) / 1000 + "us");
+        }
+    }
+
+    private void addEvent(int kind, long nanos) {
+        int slot = (int) (mNextEvent.getAndIncrement() & EVENT_MASK);
+        mEvents.set(slot, ((long) kind << KIND_SHIFT) | Math.min(nanos, DURATION_MASK));
+        mEventTimes.set(slot, SystemClock.elapsedRealtime());
+    }
+
+    private static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+    }
+}
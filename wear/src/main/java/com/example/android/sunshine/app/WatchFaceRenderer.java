@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws frames of {@link SunshineWatchFace}: the time and date over a cached layer holding the
+ * background and the weather.  Kept apart from the engine so that a whole frame can be drawn,
+ * and its allocations counted, without a running watch face.
+ *
+ * Drawing a frame allocates nothing unless the date or the weather changed, since it happens
+ * every second in interactive mode.  Only to be used on the thread the watch face draws on.
+ */
+final class WatchFaceRenderer {
+    private static final Typeface NORMAL_TYPEFACE =
+            Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
+
+    private static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final String mDatePattern;
+    private final Paint mBackgroundPaint;
+    private final Paint mTextPaint;
+    private final Paint mDatePaint;
+    private final Paint mStrokePaint;
+    private final Paint mHighPaint;
+    private final Paint mLowPaint;
+    private final float mYOffset;
+    private final float mLineHeight;
+    private final int mBlack;
+    private final int mBlue;
+
+    private boolean mAmbient;
+    /**
+     * Whether the display supports fewer bits for each color in ambient mode. When true, we
+     * disable anti-aliasing in ambient mode.
+     */
+    private boolean mLowBitAmbient;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final Date mDate = new Date();
+    private TimeZone mTimeZone;
+    private SimpleDateFormat mDateFormat;
+    private final DigitalClockText mClockText = new DigitalClockText();
+    // The date as drawn, regenerated when the day or the format changes
+    private String mDateText;
+    private int mDateDay = Integer.MIN_VALUE;
+
+    // What the weather layer draws.  Only ever replaced whole, never changed.
+    private WeatherRenderState mRenderState = WeatherRenderState.EMPTY;
+
+    // Everything but the time and date, drawn once and then copied to the screen each frame
+    private Bitmap mWeatherLayer;
+    private Canvas mWeatherCanvas;
+    private boolean mWeatherLayerValid;
+
+    WatchFaceRenderer(Resources resources) {
+        mDatePattern = resources.getString(R.string.date_format);
+        int white = resources.getColor(R.color.white);
+        int whiteFade = resources.getColor(R.color.white_fade);
+
+        mYOffset = resources.getDimension(R.dimen.digital_y_offset);
+
+        mBlack = resources.getColor(R.color.black);
+        mBlue = resources.getColor(R.color.blue_500);
+        mLineHeight = resources.getDimension(R.dimen.digital_line_height);
+
+        mBackgroundPaint = new Paint();
+        mBackgroundPaint.setColor(mBlue);
+
+        mTextPaint = createTextPaint(white);
+        mDatePaint = createTextPaint(whiteFade);
+        mHighPaint = createTextPaint(white);
+        mLowPaint = createTextPaint(whiteFade);
+
+        mStrokePaint = new Paint();
+        mStrokePaint.setColor(whiteFade);
+        mStrokePaint.setStrokeWidth(1);
+
+        updateTimeZone();
+    }
+
+    private static Paint createTextPaint(int textColor) {
+        Paint paint = new Paint();
+        paint.setColor(textColor);
+        paint.setTypeface(NORMAL_TYPEFACE);
+        paint.setTextAlign(Paint.Align.CENTER);
+        paint.setAntiAlias(true);
+        return paint;
+    }
+
+    /**
+     * Loads text sizes, which have alternate values for round watches.
+     */
+    void loadTextSizes(Resources resources) {
+        float textSize = resources.getDimension(R.dimen.digital_text_size);
+        float dateSize = resources.getDimension(R.dimen.digital_date_size);
+        float temperatureSize = resources.getDimension(R.dimen.digital_temperature_size);
+
+        mTextPaint.setTextSize(textSize);
+        mDatePaint.setTextSize(dateSize);
+        mHighPaint.setTextSize(temperatureSize);
+        mLowPaint.setTextSize(temperatureSize);
+        invalidateWeatherLayer();
+    }
+
+    void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+        invalidateWeatherLayer();
+    }
+
+    boolean isAmbient() {
+        return mAmbient;
+    }
+
+    void setAmbient(boolean ambient) {
+        mAmbient = ambient;
+        mBackgroundPaint.setColor(ambient ? mBlack : mBlue);
+        if (mLowBitAmbient) {
+            mTextPaint.setAntiAlias(!ambient);
+            mDatePaint.setAntiAlias(!ambient);
+        }
+        invalidateWeatherLayer();
+    }
+
+    void setRenderState(WeatherRenderState state) {
+        mRenderState = state;
+        invalidateWeatherLayer();
+    }
+
+    /**
+     * Picks up the default time zone, and with it the date format.
+     */
+    void updateTimeZone() {
+        mTimeZone = TimeZone.getDefault();
+        mCalendar.setTimeZone(mTimeZone);
+        mDateFormat = new SimpleDateFormat(mDatePattern, Locale.getDefault());
+        mDateFormat.setCalendar(mCalendar);
+        mDateDay = Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return the local epoch day containing the given instant
+     */
+    int getEpochDay(long millis) {
+        return toEpochDay(millis + mTimeZone.getOffset(millis));
+    }
+
+    /**
+     * @return the epoch day containing the given wall clock time
+     */
+    private static int toEpochDay(long localMillis) {
+        long day = localMillis / DAY_IN_MILLIS;
+        if (localMillis % DAY_IN_MILLIS < 0) {
+            day--;
+        }
+        return (int) day;
+    }
+
+    /**
+     * Draws a frame showing the given instant.
+     */
+    void draw(Canvas canvas, long now) {
+        WatchFaceMetrics metrics = WatchFaceMetrics.getInstance();
+        long frameStart = metrics.start();
+
+        long localMillis = now + mTimeZone.getOffset(now);
+        mClockText.setTime(localMillis);
+        int day = toEpochDay(localMillis);
+        if (day != mDateDay) {
+            mDate.setTime(now);
+            mDateText = mDateFormat.format(mDate).toUpperCase();
+            mDateDay = day;
+        }
+
+        // Draw the background and the weather.
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        if (mWeatherLayer == null || mWeatherLayer.getWidth() != width
+                || mWeatherLayer.getHeight() != height) {
+            if (mWeatherLayer != null) {
+                mWeatherLayer.recycle();
+            }
+            mWeatherLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mWeatherCanvas = new Canvas(mWeatherLayer);
+            mWeatherLayerValid = false;
+        }
+        if (!mWeatherLayerValid) {
+            long layerStart = metrics.start();
+            drawWeatherLayer(mWeatherCanvas);
+            mWeatherLayerValid = true;
+            metrics.recordLayer(layerStart);
+        }
+        canvas.drawBitmap(mWeatherLayer, 0, 0, null);
+
+        int half = width/2;
+
+        mClockText.draw(canvas, half, mYOffset, mTextPaint);
+
+        canvas.drawText(mDateText, half, mYOffset + mLineHeight, mDatePaint);
+
+        metrics.recordFrame(mAmbient ? WatchFaceMetrics.MODE_AMBIENT
+                : WatchFaceMetrics.MODE_INTERACTIVE, frameStart);
+    }
+
+    /**
+     * Draws the parts of the face that only change with the weather or the display mode.
+     */
+    private void drawWeatherLayer(Canvas canvas) {
+        canvas.drawColor(mBackgroundPaint.getColor());
+
+        int half = canvas.getWidth()/2;
+        WeatherRenderState state = mRenderState;
+
+        canvas.drawLine(half - mLineHeight, mYOffset + 2 * mLineHeight,
+                half + mLineHeight, mYOffset + 2 * mLineHeight, mStrokePaint);
+
+        Bitmap icon = state.getIcon(getIconMode());
+        if (icon != null) {
+            canvas.drawBitmap(icon, half - 3 * mLineHeight, mYOffset + 4 * mLineHeight - icon.getHeight(), null);
+        }
+
+        canvas.drawText(state.high, half, mYOffset + 3 * mLineHeight + mHighPaint.getTextSize()/2, mHighPaint);
+
+        canvas.drawText(state.low, half + 2 * mLineHeight, mYOffset + 3 * mLineHeight + mLowPaint.getTextSize()/2, mLowPaint);
+    }
+
+    /**
+     * Has the weather layer redrawn on the next frame.  To be called whenever anything it
+     * draws changes.
+     */
+    void invalidateWeatherLayer() {
+        mWeatherLayerValid = false;
+    }
+
+    private int getIconMode() {
+        if (!mAmbient) {
+            return WeatherIcons.MODE_INTERACTIVE;
+        }
+        return mLowBitAmbient ? WeatherIcons.MODE_AMBIENT_LOW_BIT : WeatherIcons.MODE_AMBIENT;
+    }
+
+    /**
+     * Frees the weather layer.  The renderer can still draw afterwards; it makes a new one.
+     */
+    void release() {
+        if (mWeatherLayer != null) {
+            mWeatherLayer.recycle();
+            mWeatherLayer = null;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.util.Log;
+
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.DataMapItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Does the watch face's decoding on a background thread, so that new data never holds up a
+ * frame: reading weather data items, and turning a day's forecast into a
+ * {@link WeatherRenderState}, icons included.  Results come back on the main thread through the
+ * {@link Callback}, in the order they were asked for.
+ */
+public class WeatherDecoder {
+    private static final String TAG = WeatherDecoder.class.getSimpleName();
+
+    // Data layer paths and keys of the weather payload.  These must match the phone's
+    // WatchFaceSyncService.  The header item holds settings that apply to every day, and each
+    // day of the forecast is its own item, named after its local epoch day.
+    static final String WEATHER_PATH = "/weather";
+    private static final String DAY_PATH_PREFIX = "/weather/day/";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_WEATHER_ID = "weather_id";
+    private static final String KEY_HIGH = "high";
+    private static final String KEY_LOW = "low";
+    private static final String KEY_METRIC = "metric";
+    // Newest payload version this watch face understands
+    private static final int PAYLOAD_VERSION = 2;
+
+    // Shown when there is no forecast for the day and nothing was shown before
+    private static final int DEFAULT_WEATHER_ID = 800;
+
+    private static final int MSG_DECODE_EVENTS = 1;
+    private static final int MSG_DECODE_ITEMS = 2;
+    private static final int MSG_RENDER = 3;
+    private static final int MSG_SET_ICON_SIZE = 4;
+
+    public interface Callback {
+        /**
+         * Called on the main thread with the changes a batch of data events or items makes.
+         */
+        void onUpdatesDecoded(List<Update> updates);
+
+        /**
+         * Called on the main thread with a newly built render state.
+         */
+        void onRenderStateReady(WeatherRenderState state);
+    }
+
+    /**
+     * A change to the forecast, read from a data event or item.
+     */
+    public static final class Update {
+        public static final int HEADER = 0;
+        public static final int DAY = 1;
+        public static final int DELETED = 2;
+
+        public final int kind;
+        // For DAY and DELETED
+        public final int epochDay;
+        // For DAY
+        public final WeatherStateStore.Day forecast;
+        // For HEADER
+        public final boolean metric;
+
+        Update(int kind, int epochDay, WeatherStateStore.Day forecast, boolean metric) {
+            this.kind = kind;
+            this.epochDay = epochDay;
+            this.forecast = forecast;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * What to build a render state from.
+     */
+    private static final class RenderRequest {
+        final WeatherStateStore.Day forecast;
+        final boolean metric;
+
+        RenderRequest(WeatherStateStore.Day forecast, boolean metric) {
+            this.forecast = forecast;
+            this.metric = metric;
+        }
+    }
+
+    private final Context mContext;
+    private final Callback mCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private volatile boolean mClosed;
+
+    // Only touched on the decoder's thread
+    private final WeatherIcons mIcons;
+    private int mWeatherId = DEFAULT_WEATHER_ID;
+
+    public WeatherDecoder(Context context, Callback callback) {
+        mContext = context;
+        mCallback = callback;
+        mIcons = new WeatherIcons(context.getResources());
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper(), new Handler.Callback() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean handleMessage(Message msg) {
+                switch (msg.what) {
+                    case MSG_DECODE_EVENTS:
+                        decodeEvents((List<DataEvent>) msg.obj);
+                        return true;
+                    case MSG_DECODE_ITEMS:
+                        decodeItems((List<DataItem>) msg.obj);
+                        return true;
+                    case MSG_RENDER:
+                        render((RenderRequest) msg.obj);
+                        return true;
+                    case MSG_SET_ICON_SIZE:
+                        mIcons.setSize(msg.arg1);
+                        return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @param events Data events, already frozen, since the buffer they came in is released as
+     *               soon as the listener returns
+     */
+    public void decodeEvents(ArrayList<DataEvent> events) {
+        mHandler.obtainMessage(MSG_DECODE_EVENTS, events).sendToTarget();
+    }
+
+    /**
+     * @param items Data items, already frozen, as for {@link #decodeEvents(ArrayList)}
+     */
+    public void decodeItems(ArrayList<DataItem> items) {
+        mHandler.obtainMessage(MSG_DECODE_ITEMS, items).sendToTarget();
+    }
+
+    /**
+     * Builds a render state for a day.  A request that hasn't been started when a newer one
+     * arrives is dropped, since only the latest state is ever shown.
+     * @param forecast The day's forecast, or null if there is none
+     */
+    public void render(WeatherStateStore.Day forecast, boolean metric) {
+        mHandler.removeMessages(MSG_RENDER);
+        mHandler.obtainMessage(MSG_RENDER, new RenderRequest(forecast, metric)).sendToTarget();
+    }
+
+    /**
+     * Sets the size, in pixels, of the icons in render states built from now on.
+     */
+    public void setIconSize(int size) {
+        mHandler.obtainMessage(MSG_SET_ICON_SIZE, size, 0).sendToTarget();
+    }
+
+    /**
+     * Stops the decoder's thread.  Nothing more is delivered to the callback.
+     */
+    public void close() {
+        mClosed = true;
+        mThread.quit();
+        mMainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void decodeEvents(List<DataEvent> events) {
+        List<Update> updates = new ArrayList<>(events.size());
+        for (DataEvent event : events) {
+            Update update = null;
+            if (event.getType() == DataEvent.TYPE_CHANGED) {
+                update = decodeItem(event.getDataItem());
+            } else if (event.getType() == DataEvent.TYPE_DELETED) {
+                int day = getDay(event.getDataItem().getUri());
+                if (day != Integer.MIN_VALUE) {
+                    update = new Update(Update.DELETED, day, null, false);
+                }
+            }
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        postUpdates(updates);
+    }
+
+    private void decodeItems(List<DataItem> items) {
+        List<Update> updates = new ArrayList<>(items.size());
+        for (DataItem item : items) {
+            Update update = decodeItem(item);
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        postUpdates(updates);
+    }
+
+    private void postUpdates(final List<Update> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mClosed) {
+                    mCallback.onUpdatesDecoded(updates);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the change a weather data item makes, or null if it isn't one we understand
+     */
+    private Update decodeItem(DataItem item) {
+        Uri uri = item.getUri();
+        DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
+        if (WEATHER_PATH.equals(uri.getPath())) {
+            if (dataMap.getInt(KEY_VERSION) > PAYLOAD_VERSION) {
+                Log.w(TAG, "Ignoring weather payload version " + dataMap.getInt(KEY_VERSION));
+                return null;
+            }
+            return new Update(Update.HEADER, 0, null, dataMap.getBoolean(KEY_METRIC, true));
+        }
+        int day = getDay(uri);
+        if (day == Integer.MIN_VALUE) {
+            return null;
+        }
+        WeatherStateStore.Day forecast = new WeatherStateStore.Day(
+                dataMap.getInt(KEY_WEATHER_ID), dataMap.getDouble(KEY_HIGH),
+                dataMap.getDouble(KEY_LOW));
+        return new Update(Update.DAY, day, forecast, false);
+    }
+
+    /**
+     * @return the epoch day of a day item, or {@link Integer#MIN_VALUE} for any other item
+     */
+    private static int getDay(Uri uri) {
+        String path = uri.getPath();
+        if (path == null || !path.startsWith(DAY_PATH_PREFIX)) {
+            return Integer.MIN_VALUE;
+        }
+        try {
+            return Integer.parseInt(path.substring(DAY_PATH_PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private void render(RenderRequest request) {
+        String high;
+        String low;
+        if (request.forecast != null) {
+            // Keep showing the last icon for conditions we have none for
+            if (Utility.getIconResourceForWeatherCondition(request.forecast.weatherId) != -1) {
+                mWeatherId = request.forecast.weatherId;
+            }
+            high = Utility.formatTemperature(mContext, request.forecast.high, request.metric);
+            low = Utility.formatTemperature(mContext, request.forecast.low, request.metric);
+        } else {
+            high = WeatherRenderState.NO_TEMPERATURE;
+            low = WeatherRenderState.NO_TEMPERATURE;
+        }
+
+        Bitmap icon = mIcons.get(mWeatherId, WeatherIcons.MODE_INTERACTIVE);
+        Bitmap ambientIcon = mIcons.get(mWeatherId, WeatherIcons.MODE_AMBIENT);
+        Bitmap lowBitAmbientIcon = mIcons.get(mWeatherId, WeatherIcons.MODE_AMBIENT_LOW_BIT);
+        final WeatherRenderState state = new WeatherRenderState(mWeatherId, high, low, icon,
+                ambientIcon, lowBitAmbientIcon);
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!mClosed) {
+                    mCallback.onRenderStateReady(state);
+                }
+            }
+        });
+    }
+}
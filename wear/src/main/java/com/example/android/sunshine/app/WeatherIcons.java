@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+/**
+ * Weather icons decoded at the size they are drawn at, in one variant per display mode.
+ *
+ * Each variant is made the first time it is asked for and then kept, keyed by icon, so drawing
+ * an icon never scales or filters it.  There are only a handful of icons, so the cache is
+ * small; it is emptied when the size changes.
+ */
+public class WeatherIcons {
+    public static final int MODE_INTERACTIVE = 0;
+    // Greyscale, for ambient mode
+    public static final int MODE_AMBIENT = 1;
+    // Greyscale with hard edges, for ambient mode on screens with fewer bits per color
+    public static final int MODE_AMBIENT_LOW_BIT = 2;
+    private static final int MODES = 3;
+
+    private final Resources mResources;
+    private final Paint mGreyscalePaint;
+    @SuppressWarnings("unchecked")
+    private final SparseArray<Bitmap>[] mIcons = new SparseArray[MODES];
+    private int mSize;
+
+    public WeatherIcons(Resources resources) {
+        mResources = resources;
+        for (int mode = 0; mode < MODES; mode++) {
+            mIcons[mode] = new SparseArray<>();
+        }
+
+        ColorMatrix cm = new ColorMatrix();
+        cm.setSaturation(0);
+        mGreyscalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        mGreyscalePaint.setColorFilter(new ColorMatrixColorFilter(cm));
+    }
+
+    /**
+     * Sets the width and height, in pixels, icons are drawn at.  Changing it drops every icon
+     * made so far.
+     */
+    public void setSize(int size) {
+        if (size != mSize) {
+            clear();
+            mSize = size;
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @param mode One of the MODE_ constants
+     * @return the icon for the condition, or null if there is none
+     */
+    public Bitmap get(int weatherId, int mode) {
+        int resId = Utility.getIconResourceForWeatherCondition(weatherId);
+        if (resId == -1 || mSize <= 0) {
+            return null;
+        }
+        return getForResource(resId, mode);
+    }
+
+    private Bitmap getForResource(int resId, int mode) {
+        Bitmap icon = mIcons[mode].get(resId);
+        if (icon == null) {
+            WatchFaceMetrics metrics = WatchFaceMetrics.getInstance();
+            long start = metrics.start();
+            icon = mode == MODE_INTERACTIVE ? decode(resId) : makeVariant(resId, mode);
+            metrics.recordDecode(start);
+            if (icon != null) {
+                mIcons[mode].put(resId, icon);
+            }
+        }
+        return icon;
+    }
+
+    /**
+     * Forgets every icon made so far.  They aren't recycled, since render states that are still
+     * being drawn may hold on to them.
+     */
+    public void clear() {
+        for (SparseArray<Bitmap> icons : mIcons) {
+            icons.clear();
+        }
+    }
+
+    private Bitmap decode(int resId) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(mResources, resId, options);
+        // Skip whole powers of two of the source while it stays at least as big as needed,
+        // then scale the rest of the way.
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= mSize
+                && options.outHeight / (sampleSize * 2) >= mSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(mResources, resId, options);
+        if (bitmap == null || (bitmap.getWidth() == mSize && bitmap.getHeight() == mSize)) {
+            return bitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, mSize, mSize, true);
+        if (scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    private Bitmap makeVariant(int resId, int mode) {
+        Bitmap source = getForResource(resId, MODE_INTERACTIVE);
+        if (source == null) {
+            return null;
+        }
+        Bitmap grey = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.ARGB_8888);
+        new Canvas(grey).drawBitmap(source, 0, 0, mGreyscalePaint);
+        if (mode == MODE_AMBIENT_LOW_BIT) {
+            // Without anti-aliasing, partly transparent edge pixels would show up as a fringe,
+            // so make every pixel either opaque or not there at all.
+            int[] pixels = new int[mSize * mSize];
+            grey.getPixels(pixels, 0, mSize, 0, 0, mSize, mSize);
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (pixels[i] >>> 24) >= 0x80 ? pixels[i] | 0xff000000 : 0;
+            }
+            grey.setPixels(pixels, 0, mSize, 0, 0, mSize, mSize);
+        }
+        return grey;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.graphics.Bitmap;
+
+/**
+ * Everything the watch face needs to draw the weather, ready to draw: formatted temperatures and
+ * the icon in each display mode.  Built off the main thread by {@link WeatherDecoder} and never
+ * changed afterwards, so the engine can swap it in with a single assignment.
+ */
+public final class WeatherRenderState {
+    static final String NO_TEMPERATURE = "--\u00B0";
+
+    /**
+     * Shown until the first state has been built.
+     */
+    public static final WeatherRenderState EMPTY =
+            new WeatherRenderState(0, NO_TEMPERATURE, NO_TEMPERATURE, null, null, null);
+
+    public final int weatherId;
+    public final String high;
+    public final String low;
+    private final Bitmap mIcon;
+    private final Bitmap mAmbientIcon;
+    private final Bitmap mLowBitAmbientIcon;
+
+    WeatherRenderState(int weatherId, String high, String low, Bitmap icon, Bitmap ambientIcon,
+                       Bitmap lowBitAmbientIcon) {
+        this.weatherId = weatherId;
+        this.high = high;
+        this.low = low;
+        mIcon = icon;
+        mAmbientIcon = ambientIcon;
+        mLowBitAmbientIcon = lowBitAmbientIcon;
+    }
+
+    /**
+     * @param mode One of the {@link WeatherIcons} MODE_ constants
+     * @return the icon for that mode, or null if there is none
+     */
+    public Bitmap getIcon(int mode) {
+        switch (mode) {
+            case WeatherIcons.MODE_AMBIENT:
+                return mAmbientIcon;
+            case WeatherIcons.MODE_AMBIENT_LOW_BIT:
+                return mLowBitAmbientIcon;
+            default:
+                return mIcon;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.preference.PreferenceManager;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.Map;
+
+/**
+ * The forecast the watch face shows, kept in memory and saved in the background.
+ *
+ * All methods are called on the main thread.  Reading and writing SharedPreferences happens on
+ * the store's own thread: {@link #load()} returns immediately and the saved forecast is merged in
+ * when it has been read, and changes are written a moment after they are applied, so a burst of
+ * changes is written once.  The listener hears about every {@link #apply()} that changed
+ * something, and about the load, once each.
+ */
+public class WeatherStateStore {
+    private static final String TAG = WeatherStateStore.class.getSimpleName();
+
+    // Preference keys the forecast is kept under
+    private static final String PREF_DAY_PREFIX = "day_";
+    private static final String PREF_METRIC = "metric";
+
+    // How long to wait for more changes before writing
+    private static final long WRITE_DELAY_MILLIS = 1000;
+
+    public interface Listener {
+        /**
+         * Called on the main thread after the stored forecast has changed.
+         */
+        void onWeatherStateChanged();
+    }
+
+    /**
+     * One day of the forecast, as sent by the phone.  Temperatures are in Celsius.
+     */
+    public static final class Day {
+        public final int weatherId;
+        public final double high;
+        public final double low;
+
+        public Day(int weatherId, double high, double low) {
+            this.weatherId = weatherId;
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Day)) {
+                return false;
+            }
+            Day day = (Day) o;
+            return weatherId == day.weatherId
+                    && Double.compare(high, day.high) == 0
+                    && Double.compare(low, day.low) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(high) * 31 + Double.doubleToLongBits(low);
+            return weatherId * 31 + (int) (bits ^ (bits >>> 32));
+        }
+    }
+
+    private final SharedPreferences mPrefs;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mThread;
+    private final Handler mIoHandler;
+
+    // The forecast, keyed by local epoch day
+    private final SparseArray<Day> mDays = new SparseArray<>();
+    private boolean mMetric = true;
+    // Whether mMetric came from the phone rather than being the default
+    private boolean mMetricKnown;
+
+    // Days removed before the load finished, which mustn't come back from the saved forecast
+    private final SparseBooleanArray mRemovedBeforeLoad = new SparseBooleanArray();
+    private int mFirstDay = Integer.MIN_VALUE;
+
+    private boolean mChanged;
+    private boolean mLoaded;
+    private boolean mWritePending;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mWritePending = false;
+            write();
+        }
+    };
+
+    public WeatherStateStore(Context context, Listener listener) {
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mListener = listener;
+        mThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mIoHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Reads the saved forecast in the background.  Anything set before it has been read takes
+     * precedence over what was saved, since it is newer.
+     */
+    public void load() {
+        mIoHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final SparseArray<Day> days = new SparseArray<>();
+                Map<String, ?> prefs = mPrefs.getAll();
+                for (Map.Entry<String, ?> entry : prefs.entrySet()) {
+                    String key = entry.getKey();
+                    if (!key.startsWith(PREF_DAY_PREFIX) || !(entry.getValue() instanceof String)) {
+                        continue;
+                    }
+                    String[] values = ((String) entry.getValue()).split(":");
+                    try {
+                        int day = Integer.parseInt(key.substring(PREF_DAY_PREFIX.length()));
+                        days.put(day, new Day(Integer.parseInt(values[0]),
+                                Double.parseDouble(values[1]), Double.parseDouble(values[2])));
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        Log.w(TAG, "Ignoring saved forecast " + key, e);
+                    }
+                }
+                final Object metric = prefs.get(PREF_METRIC);
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoaded(days, metric instanceof Boolean ? (Boolean) metric : null);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onLoaded(SparseArray<Day> days, Boolean metric) {
+        mLoaded = true;
+        boolean changed = false;
+        for (int i = 0; i < days.size(); i++) {
+            int day = days.keyAt(i);
+            if (day >= mFirstDay && mDays.indexOfKey(day) < 0 && !mRemovedBeforeLoad.get(day)) {
+                mDays.put(day, days.valueAt(i));
+                changed = true;
+            }
+        }
+        mRemovedBeforeLoad.clear();
+        if (metric != null && !mMetricKnown && metric != mMetric) {
+            mMetric = metric;
+            changed = true;
+        }
+        if (mWritePending) {
+            // Writes wait for the load, so that they don't replace days that haven't been read
+            mMainHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MILLIS);
+        }
+        if (changed) {
+            mListener.onWeatherStateChanged();
+        }
+    }
+
+    /**
+     * @return the forecast for a local epoch day, or null if there is none
+     */
+    public Day getDay(int epochDay) {
+        return mDays.get(epochDay);
+    }
+
+    /**
+     * @return whether temperatures are shown in Celsius
+     */
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public void putDay(int epochDay, Day day) {
+        if (!day.equals(mDays.get(epochDay))) {
+            mDays.put(epochDay, day);
+            mChanged = true;
+        }
+    }
+
+    public void removeDay(int epochDay) {
+        if (!mLoaded) {
+            mRemovedBeforeLoad.put(epochDay, true);
+        }
+        int index = mDays.indexOfKey(epochDay);
+        if (index >= 0) {
+            mDays.removeAt(index);
+            mChanged = true;
+        }
+    }
+
+    public void setMetric(boolean metric) {
+        mMetricKnown = true;
+        if (metric != mMetric) {
+            mMetric = metric;
+            mChanged = true;
+        }
+    }
+
+    /**
+     * Forgets the days before the given one.  They are never shown again, so the listener isn't
+     * told, but the removal is saved.
+     */
+    public void removeDaysBefore(int epochDay) {
+        mFirstDay = Math.max(mFirstDay, epochDay);
+        boolean removed = false;
+        while (mDays.size() > 0 && mDays.keyAt(0) < epochDay) {
+            mDays.removeAt(0);
+            removed = true;
+        }
+        if (removed) {
+            scheduleWrite();
+        }
+    }
+
+    /**
+     * Finishes a set of changes: tells the listener and schedules a write, if anything actually
+     * changed since the last call.
+     */
+    public void apply() {
+        if (!mChanged) {
+            return;
+        }
+        mChanged = false;
+        scheduleWrite();
+        mListener.onWeatherStateChanged();
+    }
+
+    /**
+     * Writes any pending changes right away and stops the store's thread.  The store can't be
+     * used afterwards.
+     */
+    public void close() {
+        if (mWritePending && mLoaded) {
+            mMainHandler.removeCallbacks(mWriteRunnable);
+            mWritePending = false;
+            write();
+        }
+        mMainHandler.removeCallbacksAndMessages(null);
+        mThread.quitSafely();
+    }
+
+    private void scheduleWrite() {
+        if (!mWritePending) {
+            mWritePending = true;
+            if (mLoaded) {
+                mMainHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Snapshots the forecast on the main thread and hands it to the store's thread to save.
+     */
+    private void write() {
+        final int[] keys = new int[mDays.size()];
+        final String[] values = new String[mDays.size()];
+        for (int i = 0; i < mDays.size(); i++) {
+            Day day = mDays.valueAt(i);
+            keys[i] = mDays.keyAt(i);
+            values[i] = day.weatherId + ":" + day.high + ":" + day.low;
+        }
+        final boolean metric = mMetric;
+
+        mIoHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                SharedPreferences.Editor editor = mPrefs.edit();
+                for (String key : mPrefs.getAll().keySet()) {
+                    if (key.startsWith(PREF_DAY_PREFIX)) {
+                        editor.remove(key);
+                    }
+                }
+                for (int i = 0; i < keys.length; i++) {
+                    editor.putString(PREF_DAY_PREFIX + keys[i], values[i]);
+                }
+                editor.putBoolean(PREF_METRIC, metric);
+                // Already off the main thread, so there is no reason not to wait for the disk
+                editor.commit();
+            }
+        });
+    }
+}